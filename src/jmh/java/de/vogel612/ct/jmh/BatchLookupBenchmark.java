@@ -0,0 +1,58 @@
+package de.vogel612.ct.jmh;
+
+import de.vogel612.ct.CompressedTrie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up a sorted batch of keys, half of them stored, one by one and with a single shared descent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchLookupBenchmark {
+
+    @Param({ "URLS", "PATHS" })
+    public Corpus corpus;
+
+    @Param({ "100000" })
+    public int size;
+
+    @Param({ "10000" })
+    public int batchSize;
+
+    private CompressedTrie trie;
+    private List<String> batch;
+
+    @Setup
+    public void setup() {
+        List<String> keys = corpus.generate(size, 612L);
+        trie = new CompressedTrie(keys);
+        Random random = new Random(2015L);
+        List<String> missing = corpus.generateMissing(batchSize / 2, 1015L, keys);
+        batch = new ArrayList<>(missing);
+        while (batch.size() < batchSize) {
+            batch.add(keys.get(random.nextInt(keys.size())));
+        }
+        Collections.sort(batch);
+    }
+
+    @Benchmark
+    public boolean[] singleLookups() {
+        boolean[] result = new boolean[batch.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = trie.contains(batch.get(i));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public boolean[] containsBatch() {
+        return trie.containsBatch(batch);
+    }
+}
@@ -0,0 +1,44 @@
+package de.vogel612.ct.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a set from scratch, which measures insertion including all node splits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({ "WORDS", "URLS", "UUIDS", "PATHS" })
+    public Corpus corpus;
+
+    @Param({ "100000" })
+    public int size;
+
+    @Param({ "COMPRESSED_TRIE", "HASH_SET", "TREE_SET" })
+    public Implementation implementation;
+
+    private List<String> keys;
+
+    @Setup
+    public void setup() {
+        keys = corpus.generate(size, 612L);
+    }
+
+    @Benchmark
+    public Set<String> coldBuild() {
+        Set<String> set = implementation.create();
+        for (String key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,57 @@
+package de.vogel612.ct.jmh;
+
+import de.vogel612.ct.ConcurrentCompressedTrie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs readers against a writer on a shared {@link ConcurrentCompressedTrie}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConcurrentWorkloadBenchmark {
+
+    @Param({ "URLS", "PATHS" })
+    public Corpus corpus;
+
+    @Param({ "100000" })
+    public int size;
+
+    private ConcurrentCompressedTrie trie;
+    private String[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final Random random = new Random(Thread.currentThread().getId());
+    }
+
+    @Setup
+    public void setup() {
+        List<String> generated = corpus.generate(size * 2, 612L);
+        keys = generated.toArray(new String[0]);
+        trie = new ConcurrentCompressedTrie(generated.subList(0, size));
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public boolean read(Cursor cursor) {
+        return trie.contains(keys[cursor.random.nextInt(keys.length)]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public boolean write(Cursor cursor) {
+        // flip the key, so the trie keeps about half of the keys
+        String key = keys[cursor.random.nextInt(keys.length)];
+        return trie.remove(key) || trie.add(key);
+    }
+}
@@ -0,0 +1,128 @@
+package de.vogel612.ct.jmh;
+
+import java.util.*;
+
+/**
+ * Synthetic key sets for the benchmarks. Every corpus is generated from a seed, so runs on different machines measure
+ * the same keys without shipping any data files.
+ */
+public enum Corpus {
+    /**
+     * English-like words built from common syllables, many of them inflected
+     */
+    WORDS {
+        private final String[] syllables = {
+          "a", "al", "an", "ar", "be", "ble", "ca", "com", "con", "de", "di", "en", "er", "ex", "for", "ga", "im",
+          "in", "la", "le", "li", "lo", "ma", "mi", "mo", "na", "ni", "no", "o", "pa", "per", "pre", "pro", "ra",
+          "re", "ri", "ro", "sa", "se", "si", "ta", "te", "ter", "ti", "to", "tion", "u", "un", "ver", "vi"
+        };
+        private final String[] suffixes = { "", "", "", "s", "ed", "ing", "er", "ers", "ly", "ness" };
+
+        @Override
+        String next(Random random) {
+            StringBuilder word = new StringBuilder();
+            int count = 1 + random.nextInt(4);
+            for (int i = 0; i < count; i++) {
+                word.append(syllables[random.nextInt(syllables.length)]);
+            }
+            return word.append(suffixes[random.nextInt(suffixes.length)]).toString();
+        }
+    },
+    /**
+     * URLs on a few hosts, sharing long scheme and host prefixes
+     */
+    URLS {
+        private final String[] hosts = {
+          "https://www.example.com/", "https://api.example.com/v1/", "https://api.example.com/v2/",
+          "http://static.example.org/assets/", "https://shop.example.net/catalog/"
+        };
+        private final String[] segments = {
+          "users", "orders", "items", "search", "images", "docs", "blog", "2015", "2016", "archive", "en", "de"
+        };
+
+        @Override
+        String next(Random random) {
+            StringBuilder url = new StringBuilder(hosts[random.nextInt(hosts.length)]);
+            int depth = 1 + random.nextInt(3);
+            for (int i = 0; i < depth; i++) {
+                url.append(segments[random.nextInt(segments.length)]).append('/');
+            }
+            url.append(random.nextInt(100000));
+            if (random.nextInt(4) == 0) {
+                url.append("?page=").append(random.nextInt(50));
+            }
+            return url.toString();
+        }
+    },
+    /**
+     * Random UUIDs, which share almost no prefixes
+     */
+    UUIDS {
+        @Override
+        String next(Random random) {
+            return new UUID(random.nextLong(), random.nextLong()).toString();
+        }
+    },
+    /**
+     * File system paths with deep, shared directory prefixes
+     */
+    PATHS {
+        private final String[] roots = { "/usr/share/", "/usr/lib/", "/home/user/projects/", "/var/log/" };
+        private final String[] directories = {
+          "src", "main", "java", "de", "vogel612", "ct", "test", "resources", "build", "classes", "lib", "doc"
+        };
+        private final String[] extensions = { ".java", ".class", ".txt", ".log", ".xml", "" };
+
+        @Override
+        String next(Random random) {
+            StringBuilder path = new StringBuilder(roots[random.nextInt(roots.length)]);
+            int depth = 2 + random.nextInt(5);
+            for (int i = 0; i < depth; i++) {
+                path.append(directories[random.nextInt(directories.length)]).append('/');
+            }
+            path.append("file").append(random.nextInt(10000));
+            return path.append(extensions[random.nextInt(extensions.length)]).toString();
+        }
+    };
+
+    abstract String next(Random random);
+
+    /**
+     * Generates distinct keys of this corpus
+     *
+     * @param size The number of keys to generate
+     * @param seed The seed of the generator
+     *
+     * @return The keys in generation order
+     */
+    public List<String> generate(int size, long seed) {
+        Random random = new Random(seed);
+        Set<String> keys = new LinkedHashSet<>(size * 2);
+        while (keys.size() < size) {
+            keys.add(next(random));
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Generates keys of this corpus that are not part of the given keys
+     *
+     * @param size    The number of keys to generate
+     * @param seed    The seed of the generator, should differ from the seed of <tt>present</tt>
+     * @param present The keys to avoid
+     *
+     * @return The missing keys in generation order
+     */
+    public List<String> generateMissing(int size, long seed, Collection<String> present) {
+        Set<String> excluded = new HashSet<>(present);
+        Random random = new Random(seed);
+        Set<String> keys = new LinkedHashSet<>(size * 2);
+        while (keys.size() < size) {
+            String key = next(random);
+            if (!excluded.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+}
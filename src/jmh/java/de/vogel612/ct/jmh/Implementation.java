@@ -0,0 +1,31 @@
+package de.vogel612.ct.jmh;
+
+import de.vogel612.ct.CompressedTrie;
+
+import java.util.*;
+
+/**
+ * The String sets the benchmarks compare
+ */
+public enum Implementation {
+    COMPRESSED_TRIE {
+        @Override
+        public Set<String> create() {
+            return new CompressedTrie();
+        }
+    },
+    HASH_SET {
+        @Override
+        public Set<String> create() {
+            return new HashSet<>();
+        }
+    },
+    TREE_SET {
+        @Override
+        public Set<String> create() {
+            return new TreeSet<>();
+        }
+    };
+
+    public abstract Set<String> create();
+}
@@ -0,0 +1,54 @@
+package de.vogel612.ct.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups of keys that are stored and of keys that are not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LookupBenchmark {
+
+    @Param({ "WORDS", "URLS", "UUIDS", "PATHS" })
+    public Corpus corpus;
+
+    @Param({ "100000" })
+    public int size;
+
+    @Param({ "COMPRESSED_TRIE", "HASH_SET", "TREE_SET" })
+    public Implementation implementation;
+
+    private Set<String> set;
+    private String[] hits;
+    private String[] misses;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> keys = corpus.generate(size, 612L);
+        set = implementation.create();
+        set.addAll(keys);
+        hits = keys.toArray(new String[0]);
+        misses = corpus.generateMissing(size, 1015L, keys).toArray(new String[0]);
+    }
+
+    @Benchmark
+    public boolean containsHit() {
+        next = (next + 1) % hits.length;
+        return set.contains(hits[next]);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        next = (next + 1) % misses.length;
+        return set.contains(misses[next]);
+    }
+}
@@ -0,0 +1,59 @@
+package de.vogel612.ct.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interleaves lookups with additions and removals that keep the size of the set stable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MixedWorkloadBenchmark {
+
+    @Param({ "URLS", "PATHS" })
+    public Corpus corpus;
+
+    @Param({ "100000" })
+    public int size;
+
+    // percentage of operations that read
+    @Param({ "90", "50" })
+    public int readPercentage;
+
+    @Param({ "COMPRESSED_TRIE", "HASH_SET", "TREE_SET" })
+    public Implementation implementation;
+
+    private Set<String> set;
+    private String[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final Random random = new Random(Thread.currentThread().getId());
+    }
+
+    @Setup
+    public void setup() {
+        List<String> generated = corpus.generate(size * 2, 612L);
+        keys = generated.toArray(new String[0]);
+        set = implementation.create();
+        set.addAll(generated.subList(0, size));
+    }
+
+    @Benchmark
+    public boolean mixed(Cursor cursor) {
+        String key = keys[cursor.random.nextInt(keys.length)];
+        if (cursor.random.nextInt(100) < readPercentage) {
+            return set.contains(key);
+        }
+        // flip the key, so the set keeps about half of the keys
+        return set.remove(key) || set.add(key);
+    }
+}
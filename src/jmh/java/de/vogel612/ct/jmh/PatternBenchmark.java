@@ -0,0 +1,56 @@
+package de.vogel612.ct.jmh;
+
+import de.vogel612.ct.CompressedTrie;
+import de.vogel612.ct.TriePattern;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Pattern queries over file paths, run along the trie and, as the baseline, filtering all keys with
+ * {@link java.util.regex}. The selective pattern rules out most subtrees after a few chars, the unselective one only
+ * after reaching the file names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PatternBenchmark {
+
+    @Param({ "100000" })
+    public int size;
+
+    @Param({ "/var/log/*/test/*.xml", "*/file12?.java" })
+    public String glob;
+
+    private CompressedTrie trie;
+    private TriePattern pattern;
+    private Pattern regex;
+
+    @Setup
+    public void setup() {
+        trie = new CompressedTrie(Corpus.PATHS.generate(size, 612L));
+        pattern = TriePattern.glob(glob);
+        regex = Pattern.compile(Pattern.quote(glob).replace("*", "\\E.*\\Q").replace("?", "\\E.\\Q"));
+    }
+
+    @Benchmark
+    public List<String> triePattern() {
+        return trie.matches(pattern);
+    }
+
+    @Benchmark
+    public List<String> regexFilter() {
+        List<String> result = new ArrayList<>();
+        for (String key : trie) {
+            if (regex.matcher(key).matches()) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+}
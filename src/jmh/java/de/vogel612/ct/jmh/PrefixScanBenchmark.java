@@ -0,0 +1,74 @@
+package de.vogel612.ct.jmh;
+
+import de.vogel612.ct.CompressedTrie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefix scans of several result sizes. The prefixes are cut from stored keys, so shorter prefixes yield larger
+ * results. The sorted baseline is the matching range of a {@link TreeSet}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrefixScanBenchmark {
+
+    @Param({ "WORDS", "URLS", "PATHS" })
+    public Corpus corpus;
+
+    @Param({ "100000" })
+    public int size;
+
+    // number of chars taken from a stored key, shorter prefixes match more keys
+    @Param({ "3", "12", "24" })
+    public int prefixLength;
+
+    private CompressedTrie trie;
+    private TreeSet<String> treeSet;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> keys = corpus.generate(size, 612L);
+        trie = new CompressedTrie(keys);
+        treeSet = new TreeSet<>(keys);
+        Random random = new Random(2015L);
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            prefixes[i] = key.substring(0, Math.min(prefixLength, key.length()));
+        }
+    }
+
+    private String nextPrefix() {
+        next = (next + 1) & (prefixes.length - 1);
+        return prefixes[next];
+    }
+
+    @Benchmark
+    public List<String> trieMatches() {
+        return trie.matches(nextPrefix());
+    }
+
+    @Benchmark
+    public List<String> trieFirstTenMatches() {
+        return trie.matches(nextPrefix(), 10);
+    }
+
+    @Benchmark
+    public int trieCountPrefix() {
+        return trie.countPrefix(nextPrefix());
+    }
+
+    @Benchmark
+    public List<String> treeSetRange() {
+        String prefix = nextPrefix();
+        return new ArrayList<>(treeSet.subSet(prefix, prefix + Character.MAX_VALUE));
+    }
+}
@@ -0,0 +1,69 @@
+package de.vogel612.ct.jmh;
+
+import de.vogel612.ct.CompressedTrie;
+import de.vogel612.ct.TrieScanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the occurrences of a blocklist in a text, with the compiled scanner and, as the baseline, by looking up
+ * every substring up to the length of the longest key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    @Param({ "65536" })
+    public int textLength;
+
+    private CompressedTrie trie;
+    private TrieScanner scanner;
+    private String text;
+    private int maxLength;
+
+    @Setup
+    public void setup() {
+        List<String> keys = Corpus.WORDS.generate(size, 612L);
+        trie = new CompressedTrie(keys);
+        scanner = trie.scanner();
+        maxLength = keys.stream().mapToInt(String::length).max().orElse(0);
+        // mostly words that are not blocked, with a blocked one every now and then
+        List<String> filler = Corpus.WORDS.generateMissing(1000, 2015L, trie);
+        Random random = new Random(2015L);
+        StringBuilder builder = new StringBuilder(textLength + 32);
+        while (builder.length() < textLength) {
+            List<String> source = random.nextInt(20) == 0 ? keys : filler;
+            builder.append(source.get(random.nextInt(source.size()))).append(' ');
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public int scanner() {
+        int[] count = new int[1];
+        scanner.scan(text, (start, end, word) -> count[0]++);
+        return count[0];
+    }
+
+    @Benchmark
+    public int substringLookups() {
+        int count = 0;
+        for (int start = 0; start < text.length(); start++) {
+            for (int end = start + 1; end <= Math.min(text.length(), start + maxLength); end++) {
+                if (trie.contains(text.substring(start, end))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
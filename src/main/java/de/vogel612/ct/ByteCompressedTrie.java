@@ -0,0 +1,472 @@
+package de.vogel612.ct;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A compressed prefix tree over byte keys, for keys that arrive as UTF-8 encoded bytes.
+ * <p>
+ * <p>The nodes store their prefix as a byte array, which takes a single byte per ASCII char, and index their
+ * children by the first byte of that prefix. Keys can be looked up straight from a byte array or a {@link ByteBuffer}
+ * without decoding or copying them. As a Set of Strings, words are encoded in UTF-8 and iterated in the order of
+ * their encoded bytes, which is the order of their code points.</p>
+ * <p>
+ * <p>Every key is a well-formed UTF-8 sequence, so that words and keys convert into each other without loss. Words
+ * with unpaired surrogates and byte keys that are not valid UTF-8 are rejected when they are added, and never
+ * contained.</p>
+ */
+public class ByteCompressedTrie extends AbstractSet<String> {
+
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        byte[] label;
+        boolean word;
+        // the first bytes of the children's labels, ascending as unsigned bytes
+        byte[] keys = NO_BYTES;
+        Node[] children = NO_CHILDREN;
+        int size;
+
+        Node(byte[] label, boolean word) {
+            this.label = label;
+            this.word = word;
+        }
+
+        /**
+         * @return The position of the child starting with the given byte, or -(insertion point + 1)
+         */
+        int find(byte first) {
+            final int key = first & 0xFF;
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int candidate = keys[middle] & 0xFF;
+                if (candidate < key) {
+                    low = middle + 1;
+                } else if (candidate > key) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void insert(int position, Node child) {
+            if (size == keys.length) {
+                final int capacity = Math.max(2, size + (size >> 1));
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, position, keys, position + 1, size - position);
+            System.arraycopy(children, position, children, position + 1, size - position);
+            keys[position] = child.label[0];
+            children[position] = child;
+            size++;
+        }
+
+        void removeAt(int position) {
+            System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+            System.arraycopy(children, position + 1, children, position, size - position - 1);
+            children[--size] = null;
+        }
+
+        // absorbs the only child, which keeps this node in its parent's index
+        void mergeWithOnlyChild() {
+            final Node child = children[0];
+            final byte[] merged = Arrays.copyOf(label, label.length + child.label.length);
+            System.arraycopy(child.label, 0, merged, label.length, child.label.length);
+            label = merged;
+            word = child.word;
+            keys = child.keys;
+            children = child.children;
+            size = child.size;
+        }
+    }
+
+    private final Node root = new Node(NO_BYTES, false);
+    private int size;
+    private int modCount;
+    // not thread-safe, like the Trie itself
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+    public ByteCompressedTrie() {
+    }
+
+    public ByteCompressedTrie(Collection<String> items) {
+        addAll(items);
+    }
+
+    private static int commonPrefixLength(byte[] label, byte[] key, int offset) {
+        final int max = Math.min(label.length, key.length - offset);
+        for (int i = 0; i < max; i++) {
+            if (label[i] != key[offset + i]) {
+                return i;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Encodes a word in UTF-8
+     *
+     * @return The encoded word, or null if it contains an unpaired surrogate
+     */
+    private byte[] encode(String word) {
+        final ByteBuffer encoded;
+        try {
+            encoded = encoder.encode(CharBuffer.wrap(word));
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+        return encoded.remaining() == encoded.capacity()
+          ? encoded.array() : Arrays.copyOf(encoded.array(), encoded.remaining());
+    }
+
+    /**
+     * Adds a word
+     *
+     * @param word The word to add
+     *
+     * @return true, if the word was not contained before
+     *
+     * @throws IllegalArgumentException if the word contains an unpaired surrogate, which has no UTF-8 encoding
+     */
+    @Override
+    public boolean add(String word) {
+        Objects.requireNonNull(word, "Cannot add a null word");
+        final byte[] key = encode(word);
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot add a word with an unpaired surrogate");
+        }
+        return insert(key);
+    }
+
+    /**
+     * Adds a key given as bytes. The key is copied.
+     *
+     * @param key The UTF-8 encoded key to add
+     *
+     * @return true, if the key was not contained before
+     *
+     * @throws IllegalArgumentException if the key is not valid UTF-8
+     */
+    public boolean add(byte[] key) {
+        Objects.requireNonNull(key, "Cannot add a null key");
+        try {
+            decoder.decode(ByteBuffer.wrap(key));
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("Cannot add a key that is not valid UTF-8", e);
+        }
+        return insert(key);
+    }
+
+    private boolean insert(byte[] key) {
+        Node node = root;
+        int offset = 0;
+        while (offset < key.length) {
+            final int position = node.find(key[offset]);
+            if (position < 0) {
+                node.insert(-(position + 1), new Node(Arrays.copyOfRange(key, offset, key.length), true));
+                size++;
+                modCount++;
+                return true;
+            }
+            final Node child = node.children[position];
+            final int common = commonPrefixLength(child.label, key, offset);
+            if (common < child.label.length) {
+                final Node split = new Node(Arrays.copyOf(child.label, common), false);
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                split.insert(0, child);
+                node.children[position] = split;
+                node = split;
+            } else {
+                node = child;
+            }
+            offset += common;
+        }
+        if (node.word) {
+            return false;
+        }
+        node.word = true;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes a word. A word with an unpaired surrogate is never contained and thus not removed.
+     */
+    @Override
+    public boolean remove(Object o) {
+        Objects.requireNonNull(o, "Cannot remove a null word");
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final byte[] key = encode((String) o);
+        return key != null && remove(key);
+    }
+
+    /**
+     * Removes a key given as bytes.
+     *
+     * @param key The UTF-8 encoded key to remove
+     *
+     * @return true, if the key was contained before
+     */
+    public boolean remove(byte[] key) {
+        Objects.requireNonNull(key, "Cannot remove a null key");
+        if (!remove(root, key, 0)) {
+            return false;
+        }
+        size--;
+        modCount++;
+        return true;
+    }
+
+    private static boolean remove(Node node, byte[] key, int offset) {
+        if (offset == key.length) {
+            if (!node.word) {
+                return false;
+            }
+            node.word = false;
+            return true;
+        }
+        final int position = node.find(key[offset]);
+        if (position < 0) {
+            return false;
+        }
+        final Node child = node.children[position];
+        final int common = commonPrefixLength(child.label, key, offset);
+        if (common < child.label.length || !remove(child, key, offset + common)) {
+            return false;
+        }
+        // the caller compacts this node in turn, if it lost a child
+        if (!child.word && child.size == 0) {
+            node.removeAt(position);
+        } else if (!child.word && child.size == 1) {
+            child.mergeWithOnlyChild();
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a word is contained. A word with an unpaired surrogate never is.
+     */
+    @Override
+    public boolean contains(Object o) {
+        Objects.requireNonNull(o, "Cannot look for a null word");
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final byte[] key = encode((String) o);
+        return key != null && contains(key);
+    }
+
+    /**
+     * Checks whether the given key is contained in this Trie
+     *
+     * @param key The UTF-8 encoded key to look for
+     *
+     * @return true, if the key is contained
+     */
+    public boolean contains(byte[] key) {
+        return contains(key, 0, key.length);
+    }
+
+    /**
+     * Checks whether the key in the given range of an array is contained in this Trie
+     *
+     * @param key    The array holding the UTF-8 encoded key
+     * @param offset The index of the first byte of the key
+     * @param length The number of bytes of the key
+     *
+     * @return true, if the key is contained
+     */
+    public boolean contains(byte[] key, int offset, int length) {
+        Objects.requireNonNull(key, "Cannot look for a null key");
+        checkRange(key.length, offset, length);
+        final int end = offset + length;
+        Node node = root;
+        while (offset < end) {
+            final int position = node.find(key[offset]);
+            if (position < 0) {
+                return false;
+            }
+            node = node.children[position];
+            final byte[] label = node.label;
+            if (end - offset < label.length) {
+                return false;
+            }
+            for (int i = 1; i < label.length; i++) {
+                if (label[i] != key[offset + i]) {
+                    return false;
+                }
+            }
+            offset += label.length;
+        }
+        return node.word;
+    }
+
+    /**
+     * Checks whether the key in the given range of a buffer is contained in this Trie. The position and limit of the
+     * buffer are not used or changed.
+     *
+     * @param key    The buffer holding the UTF-8 encoded key
+     * @param offset The index of the first byte of the key
+     * @param length The number of bytes of the key
+     *
+     * @return true, if the key is contained
+     */
+    public boolean contains(ByteBuffer key, int offset, int length) {
+        Objects.requireNonNull(key, "Cannot look for a null key");
+        checkRange(key.capacity(), offset, length);
+        if (key.hasArray()) {
+            return contains(key.array(), key.arrayOffset() + offset, length);
+        }
+        final int end = offset + length;
+        Node node = root;
+        while (offset < end) {
+            final int position = node.find(key.get(offset));
+            if (position < 0) {
+                return false;
+            }
+            node = node.children[position];
+            final byte[] label = node.label;
+            if (end - offset < label.length) {
+                return false;
+            }
+            for (int i = 1; i < label.length; i++) {
+                if (label[i] != key.get(offset + i)) {
+                    return false;
+                }
+            }
+            offset += label.length;
+        }
+        return node.word;
+    }
+
+    private static void checkRange(int capacity, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > capacity - length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+              + ") out of bounds for length " + capacity);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        root.word = false;
+        root.keys = NO_BYTES;
+        root.children = NO_CHILDREN;
+        root.size = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> collection) {
+        boolean result = false;
+        for (Object item : collection) {
+            result |= remove(item);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> collection) {
+        final List<String> removed = new ArrayList<>();
+        for (String word : this) {
+            if (!collection.contains(word)) {
+                removed.add(word);
+            }
+        }
+        return removeAll(removed);
+    }
+
+    /**
+     * Iterates the words in the order of their UTF-8 encoding. The iterator is fail-fast and does not support
+     * removal.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private final int expectedModCount = modCount;
+            private byte[] path = new byte[32];
+            private Node[] nodes = { root };
+            private int[] nextChild = new int[1];
+            // the length of the path up to and including each node on the stack
+            private int[] depths = new int[1];
+            private int top = 1;
+            private String next = root.word ? "" : null;
+
+            {
+                advance();
+            }
+
+            private void advance() {
+                while (next == null && top > 0) {
+                    final Node node = nodes[top - 1];
+                    if (nextChild[top - 1] == node.size) {
+                        top--;
+                        continue;
+                    }
+                    final Node child = node.children[nextChild[top - 1]++];
+                    final int depth = depths[top - 1] + child.label.length;
+                    if (depth > path.length) {
+                        path = Arrays.copyOf(path, Math.max(depth, path.length * 2));
+                    }
+                    System.arraycopy(child.label, 0, path, depths[top - 1], child.label.length);
+                    if (top == nodes.length) {
+                        nodes = Arrays.copyOf(nodes, top * 2);
+                        nextChild = Arrays.copyOf(nextChild, top * 2);
+                        depths = Arrays.copyOf(depths, top * 2);
+                    }
+                    nodes[top] = child;
+                    nextChild[top] = 0;
+                    depths[top] = depth;
+                    top++;
+                    if (child.word) {
+                        next = new String(path, 0, depth, StandardCharsets.UTF_8);
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final String result = next;
+                next = null;
+                advance();
+                return result;
+            }
+        };
+    }
+}
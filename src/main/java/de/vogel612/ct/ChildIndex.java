@@ -0,0 +1,249 @@
+package de.vogel612.ct;
+
+import java.util.*;
+
+/**
+ * The child nodes of a {@link TrieNode}, indexed by the first char of their prefix.
+ * <p>
+ * <p>Since no two children of a node may share the first char of their prefix, that char suffices to find the only
+ * candidate for continuing a traversal. The index keeps the chars in a sorted array with a parallel array of nodes,
+ * which makes a lookup a search over primitives instead of a scan over all children.</p>
+ * <p>
+ * <p>Like the nodes of an adaptive radix tree, the index changes its layout with the number of children. Up to
+ * {@link #LINEAR_MAX} children are scanned linearly, which beats a binary search on so few chars. Larger indexes
+ * are searched binarily. From {@link #DIRECT_MIN} children on, the index adds a table from every Latin-1 char to
+ * the position of its child, which turns the lookups of most keys into a single array access. The table is dropped
+ * again when the index shrinks below half that size. The arrays start with a single slot, since most nodes never
+ * get a second child, and shrink again when most children are removed.</p>
+ */
+class ChildIndex extends AbstractCollection<TrieNode> {
+
+    static final int LINEAR_MAX = 4;
+    static final int DIRECT_MIN = 16;
+    private static final int DIRECT_RANGE = 256;
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final TrieNode[] NO_NODES = new TrieNode[0];
+
+    private char[] keys = NO_KEYS;
+    private TrieNode[] nodes = NO_NODES;
+    private int size;
+    // position + 1 of the child for every char below DIRECT_RANGE, 0 if there is none
+    private char[] direct;
+
+    /**
+     * Finds the child whose prefix begins with the given char
+     *
+     * @param first The first char of the child's prefix
+     *
+     * @return The matching child or null, if no such child exists
+     */
+    TrieNode get(char first) {
+        if (direct != null && first < DIRECT_RANGE) {
+            final int position = direct[first];
+            return position == 0 ? null : nodes[position - 1];
+        }
+        if (size <= LINEAR_MAX) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == first) {
+                    return nodes[i];
+                }
+            }
+            return null;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, first);
+        return index < 0 ? null : nodes[index];
+    }
+
+    /**
+     * @return Whether lookups of Latin-1 chars go through the direct table
+     */
+    boolean isDirect() {
+        return direct != null;
+    }
+
+    /**
+     * Returns the child at the given position, with children ordered by the first char of their prefix
+     *
+     * @param position The position of the child, between 0 and {@link #size()} exclusive
+     *
+     * @return The child at that position
+     */
+    TrieNode at(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("No child at position " + position);
+        }
+        return nodes[position];
+    }
+
+    /**
+     * Finds the position of the first child whose prefix begins with the given char or a greater one.
+     *
+     * @param first The char to look for
+     *
+     * @return The position of that child, or {@link #size()} if all children begin with lesser chars
+     */
+    int ceilingPosition(char first) {
+        final int index = Arrays.binarySearch(keys, 0, size, first);
+        return index < 0 ? -(index + 1) : index;
+    }
+
+    /**
+     * Adds a child to the index, replacing the child that starts with the same char, if any.
+     *
+     * @param node The node to index
+     *
+     * @return The replaced child or null, if no child started with the same char
+     */
+    TrieNode put(TrieNode node) {
+        if (node.prefix.isEmpty()) {
+            throw new IllegalArgumentException("Cannot index a child without prefix");
+        }
+        final char first = node.prefix.charAt(0);
+        // children of sorted input arrive in ascending order
+        int index = size == 0 || keys[size - 1] < first ? -(size + 1) : Arrays.binarySearch(keys, 0, size, first);
+        if (index >= 0) {
+            TrieNode replaced = nodes[index];
+            nodes[index] = node;
+            return replaced;
+        }
+        index = -(index + 1);
+        if (size == keys.length) {
+            resize(size == 0 ? 1 : size < DIRECT_MIN ? size * 2 : size + (size >> 1));
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(nodes, index, nodes, index + 1, size - index);
+        keys[index] = first;
+        nodes[index] = node;
+        size++;
+        if (direct != null) {
+            reindex(index);
+        } else if (size == DIRECT_MIN) {
+            direct = new char[DIRECT_RANGE];
+            reindex(0);
+        }
+        return null;
+    }
+
+    private void resize(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        nodes = Arrays.copyOf(nodes, capacity);
+    }
+
+    // updates the direct table for the children from the given position on, which have moved
+    private void reindex(int from) {
+        for (int i = from; i < size; i++) {
+            if (keys[i] < DIRECT_RANGE) {
+                direct[keys[i]] = (char) (i + 1);
+            }
+        }
+    }
+
+    /**
+     * Removes the child whose prefix begins with the given char
+     *
+     * @param first The first char of the child's prefix
+     *
+     * @return The removed child or null, if no such child exists
+     */
+    TrieNode remove(char first) {
+        int index = Arrays.binarySearch(keys, 0, size, first);
+        if (index < 0) {
+            return null;
+        }
+        TrieNode removed = nodes[index];
+        removeAt(index);
+        return removed;
+    }
+
+    private void removeAt(int index) {
+        final char first = keys[index];
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(nodes, index + 1, nodes, index, size - index - 1);
+        nodes[--size] = null;
+        if (direct != null) {
+            if (size < DIRECT_MIN / 2) {
+                direct = null;
+            } else {
+                if (first < DIRECT_RANGE) {
+                    direct[first] = 0;
+                }
+                reindex(index);
+            }
+        }
+        if (size == 0) {
+            keys = NO_KEYS;
+            nodes = NO_NODES;
+        } else if (size <= keys.length / 4) {
+            resize(size * 2);
+        }
+    }
+
+    @Override
+    public boolean add(TrieNode node) {
+        put(node);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof TrieNode) || ((TrieNode) o).prefix.isEmpty()) {
+            return false;
+        }
+        TrieNode node = (TrieNode) o;
+        int index = Arrays.binarySearch(keys, 0, size, node.prefix.charAt(0));
+        if (index < 0 || !nodes[index].equals(node)) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        keys = NO_KEYS;
+        nodes = NO_NODES;
+        direct = null;
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterates the children in ascending order of their first char
+     */
+    @Override
+    public Iterator<TrieNode> iterator() {
+        return new Iterator<TrieNode>() {
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public TrieNode next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return nodes[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                removeAt(last);
+                next = last;
+                last = -1;
+            }
+        };
+    }
+}
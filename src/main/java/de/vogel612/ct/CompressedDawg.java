@@ -0,0 +1,383 @@
+package de.vogel612.ct;
+
+import java.util.*;
+
+/**
+ * An immutable, minimized Trie in which identical subtrees are stored only once, a directed acyclic word graph.
+ * <p>
+ * <p>Two nodes of a Trie can be merged when they complete the same set of suffixes, that is when both or neither are
+ * words and their children carry the same prefixes and can be merged as well. Dictionaries with inflections or common
+ * endings contain many such nodes: "boxes" and "foxes" end in the same subtree below "box" and "fox". Since a merged
+ * node is reached by several paths, the prefix of a node moves to the edge leading to it. Each state keeps the number
+ * of words below it, which is the same on every path.</p>
+ * <p>
+ * <p>States and edges are numbered and stored in primitive arrays like in {@link FrozenCompressedTrie}, the edges of
+ * a state are consecutive. Created by {@link CompressedTrie#minimize()}.</p>
+ */
+public final class CompressedDawg extends AbstractSet<String> {
+
+    private final int nodeCount;
+    private final int root;
+    private final long[] words;
+    private final int[] wordCounts;
+    private final int[] firstEdge;
+    private final char[] labels;
+    private final int[] labelStart;
+    private final char[] edgeChars;
+    private final int[] targets;
+
+    /**
+     * The equivalence class of a node: whether it is a word and the edges to its merged children.
+     */
+    private static final class Signature {
+        final boolean word;
+        final String[] labels;
+        final int[] targets;
+        final int hash;
+
+        Signature(boolean word, String[] labels, int[] targets) {
+            this.word = word;
+            this.labels = labels;
+            this.targets = targets;
+            this.hash = 31 * (31 * Boolean.hashCode(word) + Arrays.hashCode(labels)) + Arrays.hashCode(targets);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Signature)) {
+                return false;
+            }
+            Signature signature = (Signature) other;
+            return word == signature.word && Arrays.equals(targets, signature.targets)
+              && Arrays.equals(labels, signature.labels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Collects the states while minimizing, numbered in the order they are registered
+     */
+    private static final class Minimizer {
+        final Map<Signature, Integer> register = new HashMap<>();
+        final List<Signature> states = new ArrayList<>();
+        final List<Integer> wordCounts = new ArrayList<>();
+        int nodes;
+        int edges;
+        int labelLength;
+
+        int minimize(TrieNode node) {
+            nodes++;
+            final int count = node.children.size();
+            final String[] labels = new String[count];
+            final int[] targets = new int[count];
+            for (int i = 0; i < count; i++) {
+                final TrieNode child = node.children.at(i);
+                labels[i] = child.prefix;
+                targets[i] = minimize(child);
+            }
+            final Signature signature = new Signature(node.isCompleteWord, labels, targets);
+            Integer state = register.get(signature);
+            if (state == null) {
+                state = states.size();
+                register.put(signature, state);
+                states.add(signature);
+                wordCounts.add(node.wordCount);
+                edges += count;
+                for (String label : labels) {
+                    labelLength += label.length();
+                }
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Minimizes the tree below the given root
+     *
+     * @param root The root of the tree, with an empty prefix
+     */
+    CompressedDawg(TrieNode root) {
+        final Minimizer minimizer = new Minimizer();
+        this.root = minimizer.minimize(root);
+        this.nodeCount = minimizer.nodes;
+        final int states = minimizer.states.size();
+        words = new long[(states + 63) >>> 6];
+        wordCounts = new int[states];
+        firstEdge = new int[states + 1];
+        labels = new char[minimizer.labelLength];
+        labelStart = new int[minimizer.edges + 1];
+        edgeChars = new char[minimizer.edges];
+        targets = new int[minimizer.edges];
+
+        int edge = 0;
+        int label = 0;
+        for (int state = 0; state < states; state++) {
+            final Signature signature = minimizer.states.get(state);
+            if (signature.word) {
+                words[state >>> 6] |= 1L << state;
+            }
+            wordCounts[state] = minimizer.wordCounts.get(state);
+            firstEdge[state] = edge;
+            for (int i = 0; i < signature.targets.length; i++, edge++) {
+                final String prefix = signature.labels[i];
+                labelStart[edge] = label;
+                prefix.getChars(0, prefix.length(), labels, label);
+                label += prefix.length();
+                edgeChars[edge] = prefix.charAt(0);
+                targets[edge] = signature.targets[i];
+            }
+        }
+        firstEdge[states] = edge;
+        labelStart[edge] = label;
+    }
+
+    /**
+     * @return The number of nodes of the Trie this graph was minimized from
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return The number of states left after merging identical subtrees
+     */
+    public int stateCount() {
+        return wordCounts.length;
+    }
+
+    /**
+     * @return The number of edges between the states
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    private boolean isWord(int state) {
+        return (words[state >>> 6] & 1L << state) != 0;
+    }
+
+    /**
+     * Finds the edge of a state whose label begins with the given char
+     *
+     * @return The number of the edge or -1, if there is no such edge
+     */
+    private int edge(int state, char first) {
+        int low = firstEdge[state];
+        int high = firstEdge[state + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char key = edgeChars[middle];
+            if (key < first) {
+                low = middle + 1;
+            } else if (key > first) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private boolean labelMatches(int start, int length, String key, int offset) {
+        for (int i = 0; i < length; i++) {
+            if (labels[start + i] != key.charAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return wordCounts[root];
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        Objects.requireNonNull(o, "Cannot look for a null word");
+        return o instanceof String && contains((String) o);
+    }
+
+    /**
+     * Checks whether the given word is contained in this graph
+     *
+     * @param word The word to look for
+     *
+     * @return true, if the word is contained
+     */
+    public boolean contains(String word) {
+        int state = root;
+        int offset = 0;
+        while (offset < word.length()) {
+            final int edge = edge(state, word.charAt(offset));
+            if (edge < 0) {
+                return false;
+            }
+            final int start = labelStart[edge];
+            final int length = labelStart[edge + 1] - start;
+            if (word.length() - offset < length || !labelMatches(start, length, word, offset)) {
+                return false;
+            }
+            offset += length;
+            state = targets[edge];
+        }
+        return isWord(state);
+    }
+
+    /**
+     * Finds the state below which all words start with the given prefix
+     *
+     * @param prefix The prefix to look for
+     * @param path   Receives the key of the found state
+     *
+     * @return The number of the state or -1, if no word starts with the prefix
+     */
+    private int findState(String prefix, StringBuilder path) {
+        int state = root;
+        int offset = 0;
+        while (offset < prefix.length()) {
+            final int edge = edge(state, prefix.charAt(offset));
+            if (edge < 0) {
+                return -1;
+            }
+            final int start = labelStart[edge];
+            final int length = labelStart[edge + 1] - start;
+            if (!labelMatches(start, Math.min(length, prefix.length() - offset), prefix, offset)) {
+                return -1;
+            }
+            path.append(labels, start, length);
+            offset += length;
+            state = targets[edge];
+        }
+        return state;
+    }
+
+    /**
+     * Counts the words in this graph that start with the given prefix
+     *
+     * @param prefix The prefix that the word has to begin with to be counted
+     *
+     * @return The number of words starting with <tt>prefix</tt>
+     */
+    public int countPrefix(String prefix) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        final int state = findState(prefix, new StringBuilder());
+        return state < 0 ? 0 : wordCounts[state];
+    }
+
+    /**
+     * Finds all words in this graph that start with the given prefix
+     *
+     * @param prefix The prefix that the words have to begin with
+     *
+     * @return The matching words in ascending order
+     */
+    public List<String> matches(String prefix) {
+        return matches(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the first words in this graph that start with the given prefix
+     *
+     * @param prefix The prefix that the words have to begin with
+     * @param limit  The maximum number of words to return
+     *
+     * @return At most <tt>limit</tt> matching words in ascending order
+     *
+     * @throws IllegalArgumentException if <tt>limit</tt> is negative
+     */
+    public List<String> matches(String prefix, int limit) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative, was " + limit);
+        }
+        final StringBuilder path = new StringBuilder(prefix.length() + 16);
+        final int state = findState(prefix, path);
+        if (state < 0 || limit == 0) {
+            return new ArrayList<>();
+        }
+        final List<String> result = new ArrayList<>(Math.min(limit, wordCounts[state]));
+        final WordIterator words = new WordIterator(state, path);
+        while (words.hasNext() && result.size() < limit) {
+            result.add(words.next());
+        }
+        return result;
+    }
+
+    /**
+     * Iterates the words in ascending order
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new WordIterator(root, new StringBuilder());
+    }
+
+    /**
+     * Walks the paths below a state depth-first on an explicit stack.
+     */
+    private final class WordIterator implements Iterator<String> {
+        private final StringBuilder path;
+        private int[] states = new int[16];
+        // the next edge of each state on the stack to follow
+        private int[] nextEdge = new int[16];
+        // the length of the path up to each state on the stack
+        private int[] depths = new int[16];
+        private int top;
+        private String next;
+
+        WordIterator(int state, StringBuilder path) {
+            this.path = path;
+            enter(state);
+            advance();
+        }
+
+        private void enter(int state) {
+            if (top == states.length) {
+                states = Arrays.copyOf(states, top * 2);
+                nextEdge = Arrays.copyOf(nextEdge, top * 2);
+                depths = Arrays.copyOf(depths, top * 2);
+            }
+            states[top] = state;
+            nextEdge[top] = firstEdge[state];
+            depths[top] = path.length();
+            top++;
+            if (isWord(state)) {
+                next = path.toString();
+            }
+        }
+
+        private void advance() {
+            while (next == null && top > 0) {
+                final int state = states[top - 1];
+                if (nextEdge[top - 1] < firstEdge[state + 1]) {
+                    final int edge = nextEdge[top - 1]++;
+                    path.setLength(depths[top - 1]);
+                    path.append(labels, labelStart[edge], labelStart[edge + 1] - labelStart[edge]);
+                    enter(targets[edge]);
+                } else {
+                    top--;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final String result = next;
+            next = null;
+            advance();
+            return result;
+        }
+    }
+}
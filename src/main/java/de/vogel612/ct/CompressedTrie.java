@@ -1,23 +1,99 @@
 package de.vogel612.ct;
 
-import static de.vogel612.ct.TrieNode.prefixMatching;
+import static de.vogel612.util.StringHelper.commonPrefixLength;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
-public class CompressedTrie implements Collection<String> {
+/**
+ * A Collection of Strings stored in a compressed prefix tree.
+ * <p>
+ * <p>The Trie is a thin wrapper over the keys of a {@link CompressedTrieMap}, which holds the tree and does all the
+ * bookkeeping. Words are kept in the order of {@link String#compareTo(String)}, since the children of every node are
+ * sorted by the first char of their prefix. Navigation and range views are resolved by walking the tree.</p>
+ */
+public class CompressedTrie implements NavigableSet<String> {
 
-    private final TrieNode root = new TrieNode("", false, Collections.emptyList());
-
-    // it's quicker to keep it here than calculating every time
-    private int size;
+    private final CompressedTrieMap<Object> map = new CompressedTrieMap<>();
+    private final TrieNode root = map.root;
 
     public CompressedTrie() {
     }
 
+    /**
+     * Creates a Trie containing the given words. All of them start with a score of 0, use
+     * {@link #add(String, long)} to rank them for {@link #topK(String, int)}.
+     *
+     * @param items The words to add
+     */
     public CompressedTrie(Collection<String> items) {
         addAll(items);
     }
 
+    /**
+     * Builds a Trie from the given words, using all threads of the common {@link ForkJoinPool}.
+     *
+     * @param words The words to add, in any order
+     *
+     * @return A new Trie with the given words, all of them with a score of 0
+     *
+     * @implNote The words are sorted in parallel and then split by the first char in which they differ, recursively,
+     * until the groups are small enough to be built by a {@link Builder}. Each group becomes a subtree that is built
+     * in its own task and attached to the node of the common prefix.
+     */
+    public static CompressedTrie parallelBuild(Collection<String> words) {
+        final String[] sorted = words.toArray(new String[0]);
+        Arrays.parallelSort(sorted);
+        final CompressedTrie trie = new CompressedTrie();
+        if (sorted.length == 0) {
+            return trie;
+        }
+        final TrieNode subtree = new TrieBuildTask(sorted, 0, sorted.length, 0).invoke();
+        if (subtree.prefix.isEmpty()) {
+            trie.root.isCompleteWord = subtree.isCompleteWord;
+            trie.root.children.addAll(subtree.children);
+        } else {
+            trie.root.children.put(subtree);
+        }
+        trie.root.wordCount = subtree.wordCount;
+        return trie;
+    }
+
+    /**
+     * Returns a {@link Collector} that gathers Strings into a Trie, built by {@link #parallelBuild(Collection)}.
+     *
+     * @return A Collector suited for parallel streams
+     */
+    public static Collector<String, ?, CompressedTrie> toCompressedTrie() {
+        return Collector.of(ArrayList::new, List::add, (List<String> left, List<String> right) -> {
+            left.addAll(right);
+            return left;
+        }, CompressedTrie::parallelBuild);
+    }
+
+    /**
+     * Creates a {@link Builder} that builds a Trie from words in ascending order.
+     *
+     * @return A new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
     /**
      * Adds another String to this instance of CompressedTrie
      *
@@ -26,12 +102,40 @@ public class CompressedTrie implements Collection<String> {
      * @return true, if the collection was modified as a result of this method
      */
     public boolean add(String newString) {
-        if (contains(newString)) {
-            return false;
+        return map.addKey(newString);
+    }
+
+    /**
+     * Adds a word with a score, like the popularity used to rank completions in {@link #topK(String, int)}. If the
+     * word is already contained, only its score is replaced. Words added without a score have a score of 0.
+     *
+     * @param word  The word to add
+     * @param score The score of the word, must not be negative
+     *
+     * @return true, if the word was not contained before
+     *
+     * @throws IllegalArgumentException if <tt>score</tt> is negative
+     */
+    public boolean add(String word, long score) {
+        if (score < 0) {
+            throw new IllegalArgumentException("Score must not be negative, was " + score);
         }
-        root.addChild(newString);
-        size++;
-        return true;
+        final boolean added = map.addKey(word);
+        root.setScore(word, 0, score);
+        return added;
+    }
+
+    /**
+     * Returns the score of a word in this Trie
+     *
+     * @param word The word to look up
+     *
+     * @return The score of the word, or -1 if it is not contained
+     */
+    public long score(String word) {
+        Objects.requireNonNull(word, "Cannot look for a null word");
+        final TrieNode node = root.findNode(word, 0);
+        return node == null || !node.isCompleteWord ? -1 : node.score;
     }
 
     /**
@@ -43,11 +147,14 @@ public class CompressedTrie implements Collection<String> {
      */
     @Override
     public boolean retainAll(Collection<?> collection) {
-        return matches("").stream()
-          .filter(e -> !collection.contains(e))
-          .map(this::remove)
-          .reduce((b1, b2) -> b1 || b2)
-          .orElse(false);
+        boolean result = false;
+        for (Iterator<String> it = iterator(); it.hasNext(); ) {
+            if (!collection.contains(it.next())) {
+                it.remove();
+                result = true;
+            }
+        }
+        return result;
     }
 
     /**
@@ -55,9 +162,7 @@ public class CompressedTrie implements Collection<String> {
      */
     @Override
     public void clear() {
-        root.children.clear();
-        root.isCompleteWord = false;
-        size = 0;
+        map.clear();
     }
 
     /**
@@ -88,15 +193,7 @@ public class CompressedTrie implements Collection<String> {
         if (!(word instanceof String)) {
             return false; // throwing is a jerk move :D
         }
-        // find a way to get to the parent??
-        TrieNode wordNode = findWordNode((String) word, root);
-        if (wordNode != null) {
-            // FIXME purge orphaned childnodes
-            wordNode.isCompleteWord = false;
-            size--;
-            return true;
-        }
-        return false;
+        return map.removeKey(word);
     }
 
     /**
@@ -145,6 +242,76 @@ public class CompressedTrie implements Collection<String> {
         return findWord(word);
     }
 
+    /**
+     * Checks for each of the given words whether it is contained in this Trie.
+     *
+     * @param words The words to look for, sorted ascending for best performance
+     *
+     * @return For each word, whether it is contained, in the order of <tt>words</tt>
+     *
+     * @implNote Visits the words in ascending order, looking up a sorted copy if the words are not sorted and
+     * mapping the results back by binary search. Consecutive words then share the path of their common prefix: each
+     * lookup keeps the nodes the previous one passed within that prefix and only descends from the deepest of them.
+     */
+    public boolean[] containsBatch(List<String> words) {
+        final int count = words.size();
+        final String[] given = words.toArray(new String[count]);
+        boolean isSorted = true;
+        for (int i = 0; i < count; i++) {
+            Objects.requireNonNull(given[i], "Cannot look for a null word");
+            isSorted &= i == 0 || given[i - 1].compareTo(given[i]) <= 0;
+        }
+        if (isSorted) {
+            return containsSorted(given);
+        }
+        final String[] sorted = given.clone();
+        Arrays.sort(sorted);
+        final boolean[] found = containsSorted(sorted);
+        final boolean[] result = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = found[Arrays.binarySearch(sorted, given[i])];
+        }
+        return result;
+    }
+
+    private boolean[] containsSorted(String[] sorted) {
+        final int count = sorted.length;
+        final boolean[] result = new boolean[count];
+        // the nodes on the path of the previous word and the lengths of their keys
+        TrieNode[] path = new TrieNode[16];
+        int[] depths = new int[16];
+        path[0] = root;
+        int top = 0;
+        String previous = "";
+        for (int i = 0; i < count; i++) {
+            final String word = sorted[i];
+            final int common = commonPrefixLength(previous, 0, word, 0);
+            while (depths[top] > common) {
+                top--;
+            }
+            int offset = depths[top];
+            TrieNode node = path[top];
+            while (node != null && offset < word.length()) {
+                final TrieNode child = node.matchingChild(word, offset);
+                if (child == null || !child.prefixMatches(word, offset)) {
+                    node = null;
+                    break;
+                }
+                offset += child.prefix.length();
+                if (++top == path.length) {
+                    path = Arrays.copyOf(path, top * 2);
+                    depths = Arrays.copyOf(depths, top * 2);
+                }
+                path[top] = child;
+                depths[top] = offset;
+                node = child;
+            }
+            result[i] = node != null && node.isCompleteWord;
+            previous = word;
+        }
+        return result;
+    }
+
     /**
      * Checks whether this collection contains <b>all</b> of the items in a given Collection
      *
@@ -183,26 +350,380 @@ public class CompressedTrie implements Collection<String> {
 
     /**
      * Returns a list of matches from this Trie where a match is a word, that has the same prefix
-     * as the given prefix. There are no guarantees to the order of the list.
+     * as the given prefix. The list is in ascending order.
      *
      * @param prefix The prefix that the word has to begin with to be considered a match.
      *
      * @return A List of matches.
      */
     public List<String> matches(String prefix) {
-        Map<TrieNode, String> subtreeData = root.findMatchingSubtree("", prefix);
-        TrieNode subtree = subtreeData.keySet().iterator().next(); // only one entry
+        Map.Entry<TrieNode, String> subtree = root.findMatchingSubtree(prefix);
         if (subtree == null) {
             return Collections.emptyList();
         }
         List<String> matches = new LinkedList<>();
-        if (subtree.isCompleteWord) {
-            matches.add(subtreeData.get(subtree));
+        subtree.getKey().subtreeWordNodes(subtree.getValue(), matches);
+        return matches;
+    }
+
+    /**
+     * Returns the first matches from this Trie in ascending order, where a match is a word that has the same prefix
+     * as the given prefix. The enumeration stops as soon as the limit is reached.
+     *
+     * @param prefix The prefix that the word has to begin with to be considered a match.
+     * @param limit  The maximum number of matches to return
+     *
+     * @return A List of at most <tt>limit</tt> matches.
+     */
+    public List<String> matches(String prefix, int limit) {
+        checkLimit(limit);
+        Map.Entry<TrieNode, String> subtree = root.findMatchingSubtree(prefix);
+        if (subtree == null || limit == 0) {
+            return Collections.emptyList();
+        }
+        TrieCursor cursor = new TrieCursor(subtree.getKey(), subtree.getValue(), false);
+        List<String> matches = new ArrayList<>(Math.min(limit, 16));
+        while (matches.size() < limit && cursor.advance()) {
+            matches.add(cursor.key());
         }
-        subtree.subtreeWordNodes(subtreeData.get(subtree), matches);
         return matches;
     }
 
+    /**
+     * Continues an enumeration of {@link #matches(String, int)} after the last match returned. The next page is
+     * found by seeking to <tt>lastMatch</tt> in the trie, so fetching a page costs the same no matter how many pages
+     * were fetched before.
+     *
+     * @param prefix    The prefix that the word has to begin with to be considered a match.
+     * @param lastMatch The last match of the previous page, the page starts right after it. It does not need to be
+     *                  contained in the trie anymore.
+     * @param limit     The maximum number of matches to return
+     *
+     * @return A List of at most <tt>limit</tt> matches that follow <tt>lastMatch</tt> in ascending order.
+     */
+    public List<String> matchesAfter(String prefix, String lastMatch, int limit) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        Objects.requireNonNull(lastMatch, "Cannot continue after a null word");
+        checkLimit(limit);
+        if (limit == 0) {
+            return Collections.emptyList();
+        }
+        TrieCursor cursor = new TrieCursor(root, "", false);
+        if (lastMatch.compareTo(prefix) < 0) {
+            cursor.seek(prefix, true);
+        } else {
+            cursor.seek(lastMatch, false);
+        }
+        List<String> matches = new ArrayList<>(Math.min(limit, 16));
+        while (matches.size() < limit && cursor.advance()) {
+            String match = cursor.key();
+            if (!match.startsWith(prefix)) {
+                // matches are contiguous in ascending order
+                break;
+            }
+            matches.add(match);
+        }
+        return matches;
+    }
+
+    /**
+     * Counts the words in this Trie that start with the given prefix, without enumerating them.
+     *
+     * @param prefix The prefix that the word has to begin with to be counted
+     *
+     * @return The number of words starting with <tt>prefix</tt>
+     *
+     * @implNote Runs in O(length of prefix), based on the word counts each node keeps for its subtree
+     */
+    public int countPrefix(String prefix) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        TrieNode subtree = root.findSubtree(prefix);
+        return subtree == null ? 0 : subtree.wordCount;
+    }
+
+    /**
+     * Finds the words with the highest scores that start with the given prefix, like the most popular completions of
+     * an input.
+     *
+     * @param prefix The prefix that the words have to begin with
+     * @param k      The maximum number of words to return
+     *
+     * @return At most <tt>k</tt> matching words, ordered by descending score. Words with the same score are returned
+     * in no particular order.
+     *
+     * @throws IllegalArgumentException if <tt>k</tt> is negative
+     * @implNote A best-first search: candidates are subtrees, ranked by the highest score below them, and words,
+     * ranked by their own score. Since a word is only taken when no remaining subtree can hold a higher score, the
+     * search stops after the <tt>k</tt>-th word and never descends into a subtree whose highest score ranks below it.
+     * The key of a candidate is only built when it is returned.
+     */
+    public List<String> topK(String prefix, int k) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative, was " + k);
+        }
+        final Map.Entry<TrieNode, String> subtree = root.findMatchingSubtree(prefix);
+        final List<String> result = new ArrayList<>(Math.min(k, 16));
+        if (subtree == null || k == 0) {
+            return result;
+        }
+        final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        int sequence = 0;
+        queue.add(new Candidate(subtree.getKey(), null, subtree.getValue(), false, sequence++));
+        while (!queue.isEmpty() && result.size() < k) {
+            final Candidate candidate = queue.poll();
+            if (candidate.word) {
+                result.add(candidate.key());
+                continue;
+            }
+            final TrieNode node = candidate.node;
+            if (node.isCompleteWord) {
+                queue.add(new Candidate(node, candidate, null, true, sequence++));
+            }
+            // pushed in reverse, so words with the same score come out roughly in ascending order
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                queue.add(new Candidate(node.children.at(i), candidate, null, false, sequence++));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds all words in this Trie that match the given pattern as a whole, like <tt>user_*_2026</tt>.
+     *
+     * @param pattern The glob or regular expression that the words have to match
+     *
+     * @return The matching words in ascending order
+     *
+     * @implNote Runs the pattern's automaton along the paths of the tree and skips every subtree whose path already
+     * rules out a match, so only the part of the tree that can still match is visited
+     * @see TriePattern#glob(String)
+     * @see TriePattern#regex(String)
+     */
+    public List<String> matches(TriePattern pattern) {
+        Objects.requireNonNull(pattern, "Cannot match a null pattern");
+        final List<String> result = new ArrayList<>();
+        pattern.collect(root, result);
+        return result;
+    }
+
+    /**
+     * Finds all words in this Trie within the given edit distance of a query, for example to correct a misspelling.
+     *
+     * @param query    The query to compare the words with
+     * @param maxEdits The maximum number of chars to insert, delete or replace to turn a word into the query
+     *
+     * @return The words within <tt>maxEdits</tt> of the query in ascending order
+     *
+     * @throws IllegalArgumentException if <tt>maxEdits</tt> is negative
+     * @implNote Walks the tree with the rows of the Levenshtein matrix and skips every subtree whose path is already
+     * more than <tt>maxEdits</tt> away from all prefixes of the query
+     */
+    public List<String> fuzzyMatches(String query, int maxEdits) {
+        return fuzzySearch(query, maxEdits, false);
+    }
+
+    /**
+     * Finds all words in this Trie that start with a prefix within the given edit distance of a query, for example to
+     * complete a misspelled input.
+     *
+     * @param query    The query to compare the prefixes with
+     * @param maxEdits The maximum number of chars to insert, delete or replace to turn a prefix into the query
+     *
+     * @return The words with a prefix within <tt>maxEdits</tt> of the query in ascending order
+     *
+     * @throws IllegalArgumentException if <tt>maxEdits</tt> is negative
+     * @implNote Once a path is within <tt>maxEdits</tt> of the whole query, the complete subtree below it is taken
+     */
+    public List<String> fuzzyPrefixMatches(String query, int maxEdits) {
+        return fuzzySearch(query, maxEdits, true);
+    }
+
+    private List<String> fuzzySearch(String query, int maxEdits, boolean prefixes) {
+        Objects.requireNonNull(query, "Cannot match a null query");
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("Edit distance must not be negative, was " + maxEdits);
+        }
+        final List<String> result = new ArrayList<>();
+        new FuzzySearch(query, maxEdits, prefixes).collect(root, result);
+        return result;
+    }
+
+    /**
+     * Finds the longest word in this Trie that is a prefix of the given input, like the route matching a path.
+     *
+     * @param input The input to match
+     *
+     * @return The longest word that <tt>input</tt> starts with, or null if it starts with none
+     *
+     * @implNote Walks the nodes along the input once, remembering the last word passed. Only the result is
+     * allocated, use {@link #longestPrefixLength(CharSequence)} to avoid that as well.
+     */
+    public String longestPrefixOf(CharSequence input) {
+        final int length = longestPrefixLength(input);
+        return length < 0 ? null : input.subSequence(0, length).toString();
+    }
+
+    /**
+     * Finds the length of the longest word in this Trie that is a prefix of the given input.
+     *
+     * @param input The input to match
+     *
+     * @return The length of the longest word that <tt>input</tt> starts with, or -1 if it starts with none
+     *
+     * @implNote Does not allocate
+     */
+    public int longestPrefixLength(CharSequence input) {
+        Objects.requireNonNull(input, "Cannot match a null input");
+        return root.longestPrefixLength(input);
+    }
+
+    /**
+     * Finds all words in this Trie that are prefixes of the given input.
+     *
+     * @param input The input to match
+     *
+     * @return The words that <tt>input</tt> starts with, shortest first
+     *
+     * @implNote Walks the nodes along the input once
+     */
+    public List<String> prefixesOf(CharSequence input) {
+        Objects.requireNonNull(input, "Cannot match a null input");
+        final List<String> result = new ArrayList<>();
+        root.prefixWordLengths(input, length -> result.add(input.subSequence(0, length).toString()));
+        return result;
+    }
+
+    /**
+     * Returns the lexicographic index of the given word, that is the number of words in this Trie that are less than
+     * it. The word does not need to be contained in the Trie, in which case the result is its insertion point.
+     *
+     * @param word The word to find the index of
+     *
+     * @return The number of words less than <tt>word</tt>
+     *
+     * @implNote Walks only the path of the word and sums up the word counts of the siblings left of it, so it runs in
+     * O(depth of the word times the fan-out of the nodes on its path). The counts are not kept cumulatively, since
+     * every insertion would then have to update the siblings on every level of its path.
+     */
+    public int rank(String word) {
+        Objects.requireNonNull(word, "Cannot look for a null word");
+        return root.rank(word);
+    }
+
+    /**
+     * Returns the word at the given lexicographic index, the inverse of {@link #rank(String)} for contained words.
+     *
+     * @param index The index of the word
+     *
+     * @return The word at that index
+     *
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}
+     * @implNote Descends along the word counts, scanning the children of every node on the path, so it runs in
+     * O(depth of the word times the fan-out of the nodes on its path) like {@link #rank(String)}
+     */
+    public String select(int index) {
+        return root.select(index, new StringBuilder()).toString();
+    }
+
+    /**
+     * Creates an immutable copy of this Trie that stores its nodes in primitive arrays.
+     *
+     * @return The frozen copy, which does not reflect later modifications of this Trie
+     *
+     * @implNote The copy needs a fraction of the memory of this Trie and keeps the nodes it visits close together
+     */
+    public FrozenCompressedTrie freeze() {
+        return new FrozenCompressedTrie(root);
+    }
+
+    /**
+     * Creates an immutable copy of this Trie in which identical subtrees are merged.
+     *
+     * @return The minimized copy, which reports its size before and after merging
+     *
+     * @implNote Registers the subtrees bottom-up by their word flag and the edges to their already merged children,
+     * which takes a single pass over the nodes
+     */
+    public CompressedDawg minimize() {
+        return new CompressedDawg(root);
+    }
+
+    /**
+     * Compiles the words of this Trie into a scanner that finds all their occurrences in a text, like the entries of
+     * a blocklist in a document. Later changes of this Trie do not affect the scanner.
+     *
+     * @return The compiled scanner
+     *
+     * @implNote Adds failure and output links to a flattened copy of the tree in a single breadth-first pass, which
+     * makes a scan linear in the length of the text and the number of occurrences
+     */
+    public TrieScanner scanner() {
+        return new TrieScanner(root);
+    }
+
+    /**
+     * Writes a binary snapshot of this Trie, which {@link #readFrom(InputStream)} turns back into a Trie.
+     *
+     * @param out The stream to write to, it is not closed
+     *
+     * @throws IOException if writing to the stream fails
+     * @implNote The snapshot stores the nodes as they are, with a CRC32 checksum over the whole snapshot
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        writeTo(Channels.newChannel(out));
+    }
+
+    /**
+     * Writes a binary snapshot of this Trie, which {@link #readFrom(ReadableByteChannel)} turns back into a Trie.
+     *
+     * @param out The channel to write to, it is not closed
+     *
+     * @throws IOException if writing to the channel fails
+     */
+    public void writeTo(WritableByteChannel out) throws IOException {
+        TrieSnapshot.write(root, out);
+    }
+
+    /**
+     * Reads a Trie from a snapshot written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in The stream to read from, it is not closed. Bytes following the snapshot may be consumed.
+     *
+     * @return A new Trie with the words of the snapshot
+     *
+     * @throws java.io.StreamCorruptedException if the snapshot is malformed or fails its checksum
+     * @throws java.io.EOFException             if the stream ends before the snapshot does
+     * @throws IOException                      if reading from the stream fails
+     * @implNote Rebuilds the nodes in the order they were written, without inserting any words
+     */
+    public static CompressedTrie readFrom(InputStream in) throws IOException {
+        return readFrom(Channels.newChannel(in));
+    }
+
+    /**
+     * Reads a Trie from a snapshot written by {@link #writeTo(WritableByteChannel)}.
+     *
+     * @param in The channel to read from, it is not closed. Bytes following the snapshot may be consumed.
+     *
+     * @return A new Trie with the words of the snapshot
+     *
+     * @throws java.io.StreamCorruptedException if the snapshot is malformed or fails its checksum
+     * @throws java.io.EOFException             if the channel ends before the snapshot does
+     * @throws IOException                      if reading from the channel fails
+     */
+    public static CompressedTrie readFrom(ReadableByteChannel in) throws IOException {
+        CompressedTrie trie = new CompressedTrie();
+        TrieSnapshot.read(in, trie.root);
+        return trie;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative, was " + limit);
+        }
+    }
+
     /**
      * Searches for the given word in the subtree.
      * The word must match with the prefix of the current node.
@@ -213,63 +734,469 @@ public class CompressedTrie implements Collection<String> {
      */
     private boolean findWord(final String word) {
         Objects.requireNonNull(word, "Cannot look for a null word");
-        TrieNode wordNode = findWordNode(word, root);
+        TrieNode wordNode = root.findNode(word, 0);
         return wordNode != null && wordNode.isCompleteWord;
     }
 
-    private TrieNode findWordNode(final String word, final TrieNode tree) {
-        Objects.requireNonNull(word, "Cannot look for a null word");
-        if (word.equals(tree.prefix)) {
-            return tree;
-        }
-        if (word.startsWith(tree.prefix)) {
-            final String subtreeWord = word.substring(tree.prefix.length());
-            Optional<TrieNode> subtree = tree.matchingChild(prefixMatching(subtreeWord));
-            if (subtree.isPresent()) {
-                return findWordNode(subtreeWord, subtree.get());
-            }
-        }
-        return null;
-    }
-
     /**
      * Returns the size of the current collection
      *
-     * @return The internally cached size as int
+     * @return The size as int
      *
-     * @implNote works with a separate counter incremented when elements are successfully added and decremented when
-     * elements are removed
+     * @implNote Reads the word count the root node keeps for the whole tree
      */
     @Override
     public int size() {
-        return size;
+        return map.size();
     }
 
     @Override
     public boolean isEmpty() {
-        return size == 0;
+        return map.isEmpty();
     }
 
     /**
-     * Returns the iterator over the current state of the {@link CompressedTrie}.
+     * Returns an iterator over the elements of this {@link CompressedTrie}.
      *
      * @return The Iterator over the current elements
      *
-     * @implNote The Iterator is populated eagerly, this means all items are calculated before the iterator is
-     * available
+     * @implNote The Iterator walks the trie lazily and only builds the word it returns next. It is fail-fast and
+     * supports {@link Iterator#remove()}.
      */
     @Override
     public Iterator<String> iterator() {
-        return matches("").iterator();
+        return map.navigableKeySet().iterator();
+    }
+
+    /**
+     * Creates a {@link Spliterator} over the elements of this {@link CompressedTrie}.
+     *
+     * @return The Spliterator over the current elements
+     *
+     * @implNote Splitting hands over whole subtrees, starting with the children of the root, so parallel streams
+     * process disjoint parts of the trie.
+     */
+    @Override
+    public Spliterator<String> spliterator() {
+        return map.keySpliterator();
     }
 
     @Override
     public Object[] toArray() {
-        return matches("").toArray();
+        return toArray(new Object[size()]);
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T[] toArray(T[] ts) {
-        return matches("").toArray(ts);
+        final int size = size();
+        T[] result = ts.length >= size ? ts
+          : (T[]) Array.newInstance(ts.getClass().getComponentType(), size);
+        int i = 0;
+        for (String word : this) {
+            result[i++] = (T) word;
+        }
+        if (result.length > size) {
+            result[size] = null;
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<String> descendingIterator() {
+        return map.navigableKeySet().descendingIterator();
+    }
+
+    @Override
+    public String lower(String word) {
+        return map.lowerKey(word);
+    }
+
+    @Override
+    public String floor(String word) {
+        return map.floorKey(word);
+    }
+
+    @Override
+    public String ceiling(String word) {
+        return map.ceilingKey(word);
+    }
+
+    @Override
+    public String higher(String word) {
+        return map.higherKey(word);
+    }
+
+    @Override
+    public String first() {
+        return map.firstKey();
+    }
+
+    @Override
+    public String last() {
+        return map.lastKey();
+    }
+
+    @Override
+    public String pollFirst() {
+        return map.navigableKeySet().pollFirst();
+    }
+
+    @Override
+    public String pollLast() {
+        return map.navigableKeySet().pollLast();
+    }
+
+    /**
+     * @return null, since words are kept in their natural order
+     */
+    @Override
+    public Comparator<? super String> comparator() {
+        return null;
+    }
+
+    /**
+     * Returns a view of the words in descending order, backed by this Trie.
+     *
+     * @return The reversed view
+     */
+    @Override
+    public NavigableSet<String> descendingSet() {
+        return map.descendingKeySet();
+    }
+
+    /**
+     * Returns a view of the words in the given range, backed by this Trie. The view walks the tree from its lower
+     * bound on and gets its size from the word counts of the nodes.
+     *
+     * @param fromElement   The lower bound of the range
+     * @param fromInclusive Whether the lower bound is part of the range
+     * @param toElement     The upper bound of the range
+     * @param toInclusive   Whether the upper bound is part of the range
+     *
+     * @return The view of the range
+     */
+    @Override
+    public NavigableSet<String> subSet(String fromElement, boolean fromInclusive, String toElement,
+      boolean toInclusive) {
+        return map.subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<String> headSet(String toElement, boolean inclusive) {
+        return map.headMap(toElement, inclusive).navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<String> tailSet(String fromElement, boolean inclusive) {
+        return map.tailMap(fromElement, inclusive).navigableKeySet();
+    }
+
+    @Override
+    public SortedSet<String> subSet(String fromElement, String toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<String> headSet(String toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<String> tailSet(String fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof Set)) {
+            return false;
+        }
+        Collection<?> items = (Collection<?>) other;
+        if (items.size() != size()) {
+            return false;
+        }
+        try {
+            return containsAll(items);
+        } catch (NullPointerException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (String word : this) {
+            hash += word.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return map.keySet().toString();
+    }
+
+    /**
+     * A subtree or a single word in the search of {@link #topK(String, int)}, ranked by the best score it can yield
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final TrieNode node;
+        // the subtree candidate this one was found in, null for the first one
+        final Candidate parent;
+        // the key of the first candidate's node, null for all others
+        final String key;
+        final boolean word;
+        final long bound;
+        final int sequence;
+
+        Candidate(TrieNode node, Candidate parent, String key, boolean word, int sequence) {
+            this.node = node;
+            this.parent = parent;
+            this.key = key;
+            this.word = word;
+            this.bound = word ? node.score : node.maxScore;
+            this.sequence = sequence;
+        }
+
+        String key() {
+            final Deque<String> prefixes = new ArrayDeque<>();
+            Candidate candidate = word ? parent : this;
+            while (candidate.key == null) {
+                prefixes.push(candidate.node.prefix);
+                candidate = candidate.parent;
+            }
+            final StringBuilder result = new StringBuilder(candidate.key);
+            prefixes.forEach(result::append);
+            return result.toString();
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (bound != other.bound) {
+                return bound > other.bound ? -1 : 1;
+            }
+            if (word != other.word) {
+                return word ? -1 : 1;
+            }
+            return Integer.compare(other.sequence, sequence);
+        }
+    }
+
+    /**
+     * Builds a Trie from words in ascending order, in a single pass over them.
+     * <p>
+     * <p>Since the words arrive sorted, a word only shares a part of the tree with the word before it, and that part
+     * is the path of their common prefix. The Builder keeps the path of the previous word, so adding a word only
+     * compares it with the previous one, splits at most one node on that path and appends a single new node. Nodes
+     * that leave the path are complete and never visited again. Building is linear in the total length of the
+     * words.</p>
+     * <p>
+     * <p>A Builder builds a single Trie, it cannot be used after {@link #build()}.</p>
+     */
+    public static final class Builder {
+
+        private final CompressedTrie trie;
+        // the nodes on the path of the previous word, the root at the bottom
+        private TrieNode[] path = new TrieNode[16];
+        // the length of the key of each node on the path, including its prefix
+        private int[] depths = new int[16];
+        private int top;
+        private String previous;
+        private boolean built;
+
+        private Builder() {
+            trie = new CompressedTrie();
+            path[0] = trie.root;
+        }
+
+        /**
+         * Creates a Builder for a detached subtree. All words must start with the key of its root.
+         *
+         * @param root  The root of the subtree, without children
+         * @param depth The length of the key of the root, including its prefix
+         */
+        Builder(TrieNode root, int depth) {
+            trie = null;
+            path[0] = root;
+            depths[0] = depth;
+        }
+
+        /**
+         * Adds the next word. Adding the previous word again has no effect.
+         *
+         * @param word The word to add, must not be less than the previous word
+         *
+         * @return This Builder
+         *
+         * @throws IllegalArgumentException if the word is less than the previous word
+         * @throws IllegalStateException    if the Trie was already built
+         */
+        public Builder add(String word) {
+            Objects.requireNonNull(word, "Cannot add a null word");
+            if (built) {
+                throw new IllegalStateException("The Trie was already built");
+            }
+            if (previous == null) {
+                previous = word;
+                if (word.length() == depths[0]) {
+                    path[0].isCompleteWord = true;
+                } else {
+                    push(new TrieNode(word.substring(depths[0])), word.length());
+                }
+                return this;
+            }
+            final int comparison = word.compareTo(previous);
+            if (comparison <= 0) {
+                if (comparison == 0) {
+                    return this;
+                }
+                throw new IllegalArgumentException("Words must be added in ascending order, got \"" + word
+                  + "\" after \"" + previous + "\"");
+            }
+            final int common = commonPrefixLength(previous, 0, word, 0);
+            // leave the nodes that start behind the common prefix
+            while (top > 0 && depths[top - 1] >= common) {
+                complete(top--);
+            }
+            if (depths[top] > common) {
+                // the common prefix ends within the prefix of the top node
+                final TrieNode node = path[top];
+                final int parentDepth = depths[top - 1];
+                final TrieNode split = new TrieNode(node.prefix.substring(0, common - parentDepth), false,
+                  Collections.emptyList());
+                node.prefix = node.prefix.substring(common - parentDepth);
+                complete(top);
+                split.children.put(node);
+                path[top - 1].children.put(split);
+                path[top] = split;
+                depths[top] = common;
+            }
+            // a greater word cannot be a prefix of the previous one, so something is left
+            push(new TrieNode(word.substring(common)), word.length());
+            previous = word;
+            return this;
+        }
+
+        private void push(TrieNode node, int depth) {
+            path[top].children.put(node);
+            if (++top == path.length) {
+                path = Arrays.copyOf(path, top * 2);
+                depths = Arrays.copyOf(depths, top * 2);
+            }
+            path[top] = node;
+            depths[top] = depth;
+        }
+
+        // the subtree of the node on the path is final, sum up its words
+        private void complete(int index) {
+            final TrieNode node = path[index];
+            node.wordCount = node.isCompleteWord ? 1 : 0;
+            for (TrieNode child : node.children) {
+                node.wordCount += child.wordCount;
+            }
+            path[index] = null;
+        }
+
+        /**
+         * Adds all remaining words of an iterator
+         *
+         * @param words The words to add, in ascending order
+         *
+         * @return This Builder
+         *
+         * @see #add(String)
+         */
+        public Builder addAll(Iterator<String> words) {
+            words.forEachRemaining(this::add);
+            return this;
+        }
+
+        /**
+         * Adds all words of a stream, in encounter order
+         *
+         * @param words The words to add, in ascending order
+         *
+         * @return This Builder
+         *
+         * @see #add(String)
+         */
+        public Builder addAll(Stream<String> words) {
+            words.forEachOrdered(this::add);
+            return this;
+        }
+
+        /**
+         * Adds every line of a UTF-8 encoded file as word
+         *
+         * @param file The file with one word per line, in ascending order
+         *
+         * @return This Builder
+         *
+         * @throws IOException if the file cannot be read
+         * @see #add(String)
+         */
+        public Builder addLines(Path file) throws IOException {
+            return addLines(file, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Adds every line of a file as word
+         *
+         * @param file    The file with one word per line, in ascending order
+         * @param charset The encoding of the file
+         *
+         * @return This Builder
+         *
+         * @throws IOException if the file cannot be read
+         * @see #add(String)
+         */
+        public Builder addLines(Path file, Charset charset) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(file, charset)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    add(line);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Completes the Trie.
+         *
+         * @return The Trie with all added words
+         *
+         * @throws IllegalStateException if the Trie was already built
+         */
+        public CompressedTrie build() {
+            finish();
+            return trie;
+        }
+
+        /**
+         * Completes the word counts of all nodes still on the path, including the root.
+         */
+        void finish() {
+            if (built) {
+                throw new IllegalStateException("The Trie was already built");
+            }
+            built = true;
+            while (top >= 0) {
+                complete(top--);
+            }
+        }
+
+        /**
+         * Completes the Trie and wraps it in a view that rejects modifications.
+         *
+         * @return An unmodifiable view of the Trie with all added words
+         *
+         * @throws IllegalStateException if the Trie was already built
+         */
+        public NavigableSet<String> buildUnmodifiable() {
+            return Collections.unmodifiableNavigableSet(build());
+        }
     }
 }
@@ -0,0 +1,1167 @@
+package de.vogel612.ct;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A {@link NavigableMap} from Strings to values, stored in a compressed prefix tree.
+ * <p>
+ * <p>The values are kept directly on the {@link TrieNode}s that store the keys, so the map needs no entry objects
+ * besides the nodes of the tree. Keys are ordered like {@link String#compareTo(String)}, which is the order a
+ * traversal of the tree visits them in. Navigation and range views are resolved by walking the tree, sizes of range
+ * views by the word counts of the nodes.</p>
+ * <p>
+ * <p>Null keys are not permitted, null values are.</p>
+ *
+ * @param <V> The type of the values
+ */
+public class CompressedTrieMap<V> extends AbstractMap<String, V> implements NavigableMap<String, V> {
+
+    final TrieNode root = new TrieNode("", false, Collections.emptyList());
+
+    // structural modifications, to detect them in iterators
+    int modCount;
+
+    private NavigableSet<String> keySet;
+    private Set<Entry<String, V>> entrySet;
+    private NavigableMap<String, V> descendingMap;
+
+    public CompressedTrieMap() {
+    }
+
+    public CompressedTrieMap(Map<String, ? extends V> entries) {
+        putAll(entries);
+    }
+
+    /**
+     * Returns the number of keys in this map
+     *
+     * @return The word count of the root node
+     */
+    @Override
+    public int size() {
+        return root.wordCount;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root.wordCount == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return wordNode(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        TrieNode node = wordNode(key);
+        return node == null ? null : (V) node.value;
+    }
+
+    private TrieNode wordNode(Object key) {
+        Objects.requireNonNull(key, "Cannot look for a null key");
+        if (!(key instanceof String)) {
+            return null;
+        }
+        TrieNode node = root.findNode((String) key, 0);
+        return node != null && node.isCompleteWord ? node : null;
+    }
+
+    /**
+     * Associates a value with a key, replacing the previous value of the key.
+     *
+     * @param key   The key to store
+     * @param value The value to associate with the key
+     *
+     * @return The previous value of the key, or null if the key was not contained in the map
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(String key, V value) {
+        Objects.requireNonNull(key, "Cannot add a null key");
+        final int before = root.wordCount;
+        TrieNode node = root.insert(key, 0);
+        if (root.wordCount != before) {
+            modCount++;
+        }
+        V previous = (V) node.value;
+        node.value = value;
+        return previous;
+    }
+
+    /**
+     * Adds a key without associating a value to it.
+     *
+     * @param key The key to add
+     *
+     * @return true, if the key was not contained in the map before
+     */
+    boolean addKey(String key) {
+        if (!root.addChild(key)) {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        TrieNode node = wordNode(key);
+        if (node == null) {
+            return null;
+        }
+        V previous = (V) node.value;
+        removeKey(key);
+        return previous;
+    }
+
+    /**
+     * Removes a key and its value from the map.
+     *
+     * @param key The key to remove
+     *
+     * @return true, if the key was contained in the map before
+     */
+    boolean removeKey(Object key) {
+        Objects.requireNonNull(key, "Cannot look for a null key");
+        if (!(key instanceof String) || !root.removeWord((String) key, 0)) {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root.children.clear();
+        root.isCompleteWord = false;
+        root.value = null;
+        root.wordCount = 0;
+        root.score = 0;
+        root.maxScore = 0;
+        modCount++;
+    }
+
+    /**
+     * Finds the entry with the longest key that is a prefix of the given input, like the route matching a path.
+     *
+     * @param input The input to match
+     *
+     * @return A snapshot of the entry with the longest key that <tt>input</tt> starts with, or null if it starts with
+     * none
+     */
+    @SuppressWarnings("unchecked")
+    public Entry<String, V> longestPrefixEntry(CharSequence input) {
+        Objects.requireNonNull(input, "Cannot match a null input");
+        final int length = root.longestPrefixLength(input);
+        if (length < 0) {
+            return null;
+        }
+        final String key = input.subSequence(0, length).toString();
+        return new SimpleImmutableEntry<>(key, (V) root.findNode(key, 0).value);
+    }
+
+    /**
+     * Returns a view of the entries whose keys start with the given prefix. The view is backed by this map.
+     *
+     * @param prefix The prefix the keys of the view start with
+     *
+     * @return The range of keys from <tt>prefix</tt> inclusive to the first String following all of its extensions
+     */
+    public NavigableMap<String, V> prefixMap(String prefix) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        if (prefix.isEmpty()) {
+            return this;
+        }
+        String end = prefixSuccessor(prefix);
+        return end == null ? tailMap(prefix, true) : subMap(prefix, true, end, false);
+    }
+
+    /**
+     * @return The least String that is greater than all Strings starting with the prefix, or null if there is none
+     */
+    static String prefixSuccessor(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    /**
+     * Creates a cursor over all keys of the map
+     *
+     * @param from       The key to start from, or null to start at the first key in the given direction
+     * @param inclusive  Whether <tt>from</tt> itself should be visited
+     * @param descending The direction of the cursor
+     *
+     * @return A cursor, positioned before the first key to visit
+     */
+    TrieCursor cursor(String from, boolean inclusive, boolean descending) {
+        TrieCursor cursor = new TrieCursor(root, "", descending);
+        if (from != null) {
+            cursor.seek(from, inclusive);
+        }
+        return cursor;
+    }
+
+    private TrieCursor advanced(String from, boolean inclusive, boolean descending) {
+        TrieCursor cursor = cursor(from, inclusive, descending);
+        return cursor.advance() ? cursor : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<String, V> exportEntry(TrieCursor cursor) {
+        return cursor == null ? null : new SimpleImmutableEntry<>(cursor.key(), (V) cursor.node().value);
+    }
+
+    private static String exportKey(TrieCursor cursor) {
+        return cursor == null ? null : cursor.key();
+    }
+
+    private static String requireKey(String key) {
+        if (key == null) {
+            throw new NoSuchElementException();
+        }
+        return key;
+    }
+
+    @Override
+    public Entry<String, V> lowerEntry(String key) {
+        return exportEntry(advanced(Objects.requireNonNull(key), false, true));
+    }
+
+    @Override
+    public String lowerKey(String key) {
+        return exportKey(advanced(Objects.requireNonNull(key), false, true));
+    }
+
+    @Override
+    public Entry<String, V> floorEntry(String key) {
+        return exportEntry(advanced(Objects.requireNonNull(key), true, true));
+    }
+
+    @Override
+    public String floorKey(String key) {
+        return exportKey(advanced(Objects.requireNonNull(key), true, true));
+    }
+
+    @Override
+    public Entry<String, V> ceilingEntry(String key) {
+        return exportEntry(advanced(Objects.requireNonNull(key), true, false));
+    }
+
+    @Override
+    public String ceilingKey(String key) {
+        return exportKey(advanced(Objects.requireNonNull(key), true, false));
+    }
+
+    @Override
+    public Entry<String, V> higherEntry(String key) {
+        return exportEntry(advanced(Objects.requireNonNull(key), false, false));
+    }
+
+    @Override
+    public String higherKey(String key) {
+        return exportKey(advanced(Objects.requireNonNull(key), false, false));
+    }
+
+    @Override
+    public Entry<String, V> firstEntry() {
+        return exportEntry(advanced(null, true, false));
+    }
+
+    @Override
+    public Entry<String, V> lastEntry() {
+        return exportEntry(advanced(null, true, true));
+    }
+
+    @Override
+    public Entry<String, V> pollFirstEntry() {
+        Entry<String, V> first = firstEntry();
+        if (first != null) {
+            removeKey(first.getKey());
+        }
+        return first;
+    }
+
+    @Override
+    public Entry<String, V> pollLastEntry() {
+        Entry<String, V> last = lastEntry();
+        if (last != null) {
+            removeKey(last.getKey());
+        }
+        return last;
+    }
+
+    @Override
+    public String firstKey() {
+        return requireKey(exportKey(advanced(null, true, false)));
+    }
+
+    @Override
+    public String lastKey() {
+        return requireKey(exportKey(advanced(null, true, true)));
+    }
+
+    /**
+     * @return null, since keys are kept in their natural order
+     */
+    @Override
+    public Comparator<? super String> comparator() {
+        return null;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet<>(this);
+        }
+        return entrySet;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<String> navigableKeySet() {
+        if (keySet == null) {
+            keySet = new KeySet(this);
+        }
+        return keySet;
+    }
+
+    @Override
+    public NavigableSet<String> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<String, V> descendingMap() {
+        if (descendingMap == null) {
+            descendingMap = new SubMap<>(this, null, true, null, true, true);
+        }
+        return descendingMap;
+    }
+
+    @Override
+    public NavigableMap<String, V> subMap(String fromKey, boolean fromInclusive, String toKey, boolean toInclusive) {
+        if (fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new SubMap<>(this, fromKey, fromInclusive, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<String, V> headMap(String toKey, boolean inclusive) {
+        return new SubMap<>(this, null, true, Objects.requireNonNull(toKey), inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<String, V> tailMap(String fromKey, boolean inclusive) {
+        return new SubMap<>(this, Objects.requireNonNull(fromKey), inclusive, null, true, false);
+    }
+
+    @Override
+    public SortedMap<String, V> subMap(String fromKey, String toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<String, V> headMap(String toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<String, V> tailMap(String fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * Creates a {@link Spliterator} over all keys of this map, that splits at subtree boundaries.
+     *
+     * @return The Spliterator over the current keys
+     */
+    Spliterator<String> keySpliterator() {
+        return new KeySpliterator();
+    }
+
+    static Iterator<String> keyIterator(NavigableMap<String, ?> map, boolean descending) {
+        if (map instanceof CompressedTrieMap) {
+            CompressedTrieMap<?> trieMap = (CompressedTrieMap<?>) map;
+            return trieMap.new KeyIterator(trieMap.cursor(null, true, descending), null, false, descending);
+        }
+        return ((SubMap<?>) map).keyIterator(descending);
+    }
+
+    static <V> Iterator<Entry<String, V>> entryIterator(NavigableMap<String, V> map) {
+        if (map instanceof CompressedTrieMap) {
+            CompressedTrieMap<V> trieMap = (CompressedTrieMap<V>) map;
+            return trieMap.new EntryIterator(trieMap.cursor(null, true, false), null, false, false);
+        }
+        return ((SubMap<V>) map).entryIterator();
+    }
+
+    /**
+     * Iterates the keys of a cursor up to a fence, which is the bound of a range view in the direction of the cursor.
+     */
+    abstract class CursorIterator<T> implements Iterator<T> {
+        private final TrieCursor cursor;
+        private final String fence;
+        private final boolean fenceInclusive;
+        private final boolean descending;
+        private int expectedModCount = modCount;
+        private boolean advanced;
+        private String nextKey;
+        private TrieNode nextNode;
+        private String last;
+
+        CursorIterator(TrieCursor cursor, String fence, boolean fenceInclusive, boolean descending) {
+            this.cursor = cursor;
+            this.fence = fence;
+            this.fenceInclusive = fenceInclusive;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!advanced) {
+                checkForComodification();
+                nextKey = null;
+                if (cursor.advance()) {
+                    String key = cursor.key();
+                    if (!beyondFence(key)) {
+                        nextKey = key;
+                        nextNode = cursor.node();
+                    }
+                }
+                advanced = true;
+            }
+            return nextKey != null;
+        }
+
+        private boolean beyondFence(String key) {
+            if (fence == null) {
+                return false;
+            }
+            int comparison = descending ? fence.compareTo(key) : key.compareTo(fence);
+            return comparison > 0 || comparison == 0 && !fenceInclusive;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            advanced = false;
+            last = nextKey;
+            return element(nextKey, nextNode);
+        }
+
+        abstract T element(String key, TrieNode node);
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeKey(last);
+            // removal may have merged nodes on the cursor's stack
+            cursor.seek(last, false);
+            advanced = false;
+            last = null;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    final class KeyIterator extends CursorIterator<String> {
+        KeyIterator(TrieCursor cursor, String fence, boolean fenceInclusive, boolean descending) {
+            super(cursor, fence, fenceInclusive, descending);
+        }
+
+        @Override
+        String element(String key, TrieNode node) {
+            return key;
+        }
+    }
+
+    final class EntryIterator extends CursorIterator<Entry<String, V>> {
+        EntryIterator(TrieCursor cursor, String fence, boolean fenceInclusive, boolean descending) {
+            super(cursor, fence, fenceInclusive, descending);
+        }
+
+        @Override
+        Entry<String, V> element(String key, TrieNode node) {
+            return new TrieEntry<>(key, node);
+        }
+    }
+
+    /**
+     * An entry writing its value through to the node storing its key
+     */
+    static final class TrieEntry<V> implements Entry<String, V> {
+        private final String key;
+        private final TrieNode node;
+
+        TrieEntry(String key, TrieNode node) {
+            this.key = key;
+            this.node = node;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return (V) node.value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V previous = getValue();
+            node.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) other;
+            return key.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    static final class EntrySet<V> extends AbstractSet<Entry<String, V>> {
+        private final NavigableMap<String, V> map;
+
+        EntrySet(NavigableMap<String, V> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<Entry<String, V>> iterator() {
+            return entryIterator(map);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry) || !(((Entry<?, ?>) o).getKey() instanceof String)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return map.containsKey(entry.getKey()) && Objects.equals(map.get(entry.getKey()), entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            map.remove(((Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+
+    /**
+     * The keys of a map as a {@link NavigableSet}, backed by the map.
+     */
+    static final class KeySet extends AbstractSet<String> implements NavigableSet<String> {
+        private final NavigableMap<String, ?> map;
+
+        KeySet(NavigableMap<String, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return keyIterator(map, false);
+        }
+
+        @Override
+        public Iterator<String> descendingIterator() {
+            return keyIterator(map, true);
+        }
+
+        @Override
+        public Spliterator<String> spliterator() {
+            if (map instanceof CompressedTrieMap) {
+                return ((CompressedTrieMap<?>) map).keySpliterator();
+            }
+            return super.spliterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!map.containsKey(o)) {
+                return false;
+            }
+            map.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public String lower(String key) {
+            return map.lowerKey(key);
+        }
+
+        @Override
+        public String floor(String key) {
+            return map.floorKey(key);
+        }
+
+        @Override
+        public String ceiling(String key) {
+            return map.ceilingKey(key);
+        }
+
+        @Override
+        public String higher(String key) {
+            return map.higherKey(key);
+        }
+
+        @Override
+        public String first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public String last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public String pollFirst() {
+            Entry<String, ?> first = map.pollFirstEntry();
+            return first == null ? null : first.getKey();
+        }
+
+        @Override
+        public String pollLast() {
+            Entry<String, ?> last = map.pollLastEntry();
+            return last == null ? null : last.getKey();
+        }
+
+        @Override
+        public Comparator<? super String> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public NavigableSet<String> descendingSet() {
+            return new KeySet(map.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<String> subSet(String fromElement, boolean fromInclusive, String toElement,
+          boolean toInclusive) {
+            return new KeySet(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<String> headSet(String toElement, boolean inclusive) {
+            return new KeySet(map.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<String> tailSet(String fromElement, boolean inclusive) {
+            return new KeySet(map.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<String> subSet(String fromElement, String toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<String> headSet(String toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<String> tailSet(String fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    /**
+     * A range of keys of a {@link CompressedTrieMap}, backed by the map. Bounds are given in the order of the backing
+     * map, a descending view reverses all navigation.
+     */
+    static final class SubMap<V> extends AbstractMap<String, V> implements NavigableMap<String, V> {
+        private final CompressedTrieMap<V> map;
+        // null for unbounded ranges
+        private final String lo;
+        private final boolean loInclusive;
+        private final String hi;
+        private final boolean hiInclusive;
+        private final boolean descending;
+
+        SubMap(CompressedTrieMap<V> map, String lo, boolean loInclusive, String hi, boolean hiInclusive,
+          boolean descending) {
+            this.map = map;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(String key) {
+            if (lo == null) {
+                return false;
+            }
+            int comparison = key.compareTo(lo);
+            return comparison < 0 || comparison == 0 && !loInclusive;
+        }
+
+        private boolean tooHigh(String key) {
+            if (hi == null) {
+                return false;
+            }
+            int comparison = key.compareTo(hi);
+            return comparison > 0 || comparison == 0 && !hiInclusive;
+        }
+
+        private boolean inRange(Object key) {
+            return key instanceof String && !tooLow((String) key) && !tooHigh((String) key);
+        }
+
+        private boolean inClosedRange(String key) {
+            return (lo == null || key.compareTo(lo) >= 0) && (hi == null || key.compareTo(hi) <= 0);
+        }
+
+        private boolean inRange(String key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        private Entry<String, V> absLowest() {
+            Entry<String, V> entry = lo == null ? map.firstEntry()
+              : loInclusive ? map.ceilingEntry(lo) : map.higherEntry(lo);
+            return entry == null || tooHigh(entry.getKey()) ? null : entry;
+        }
+
+        private Entry<String, V> absHighest() {
+            Entry<String, V> entry = hi == null ? map.lastEntry()
+              : hiInclusive ? map.floorEntry(hi) : map.lowerEntry(hi);
+            return entry == null || tooLow(entry.getKey()) ? null : entry;
+        }
+
+        private Entry<String, V> absCeiling(String key) {
+            if (tooLow(key)) {
+                return absLowest();
+            }
+            Entry<String, V> entry = map.ceilingEntry(key);
+            return entry == null || tooHigh(entry.getKey()) ? null : entry;
+        }
+
+        private Entry<String, V> absHigher(String key) {
+            if (tooLow(key)) {
+                return absLowest();
+            }
+            Entry<String, V> entry = map.higherEntry(key);
+            return entry == null || tooHigh(entry.getKey()) ? null : entry;
+        }
+
+        private Entry<String, V> absFloor(String key) {
+            if (tooHigh(key)) {
+                return absHighest();
+            }
+            Entry<String, V> entry = map.floorEntry(key);
+            return entry == null || tooLow(entry.getKey()) ? null : entry;
+        }
+
+        private Entry<String, V> absLower(String key) {
+            if (tooHigh(key)) {
+                return absHighest();
+            }
+            Entry<String, V> entry = map.lowerEntry(key);
+            return entry == null || tooLow(entry.getKey()) ? null : entry;
+        }
+
+        private static String key(Entry<String, ?> entry) {
+            return entry == null ? null : entry.getKey();
+        }
+
+        private Entry<String, V> pollEntry(Entry<String, V> entry) {
+            if (entry != null) {
+                map.removeKey(entry.getKey());
+            }
+            return entry;
+        }
+
+        Iterator<String> keyIterator(boolean reverse) {
+            final boolean direction = descending != reverse;
+            return map.new KeyIterator(cursor(direction), direction ? lo : hi,
+              direction ? loInclusive : hiInclusive, direction);
+        }
+
+        Iterator<Entry<String, V>> entryIterator() {
+            return map.new EntryIterator(cursor(descending), descending ? lo : hi,
+              descending ? loInclusive : hiInclusive, descending);
+        }
+
+        private TrieCursor cursor(boolean direction) {
+            return direction ? map.cursor(hi, hiInclusive, true) : map.cursor(lo, loInclusive, false);
+        }
+
+        /**
+         * Counts the keys in the range by the difference of the ranks of its bounds, which takes two walks down the
+         * tree that each sum up the counts of the siblings left of their path
+         */
+        @Override
+        public int size() {
+            int from = lo == null ? 0 : map.root.rank(lo) + (!loInclusive && map.containsKey(lo) ? 1 : 0);
+            int to = hi == null ? map.size() : map.root.rank(hi) + (hiInclusive && map.containsKey(hi) ? 1 : 0);
+            return Math.max(0, to - from);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return absLowest() == null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && map.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? map.get(key) : null;
+        }
+
+        @Override
+        public V put(String key, V value) {
+            if (!inRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return map.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? map.remove(key) : null;
+        }
+
+        @Override
+        public Entry<String, V> lowerEntry(String key) {
+            return descending ? absHigher(key) : absLower(key);
+        }
+
+        @Override
+        public String lowerKey(String key) {
+            return key(lowerEntry(key));
+        }
+
+        @Override
+        public Entry<String, V> floorEntry(String key) {
+            return descending ? absCeiling(key) : absFloor(key);
+        }
+
+        @Override
+        public String floorKey(String key) {
+            return key(floorEntry(key));
+        }
+
+        @Override
+        public Entry<String, V> ceilingEntry(String key) {
+            return descending ? absFloor(key) : absCeiling(key);
+        }
+
+        @Override
+        public String ceilingKey(String key) {
+            return key(ceilingEntry(key));
+        }
+
+        @Override
+        public Entry<String, V> higherEntry(String key) {
+            return descending ? absLower(key) : absHigher(key);
+        }
+
+        @Override
+        public String higherKey(String key) {
+            return key(higherEntry(key));
+        }
+
+        @Override
+        public Entry<String, V> firstEntry() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        @Override
+        public Entry<String, V> lastEntry() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        @Override
+        public Entry<String, V> pollFirstEntry() {
+            return pollEntry(firstEntry());
+        }
+
+        @Override
+        public Entry<String, V> pollLastEntry() {
+            return pollEntry(lastEntry());
+        }
+
+        @Override
+        public String firstKey() {
+            return requireKey(key(firstEntry()));
+        }
+
+        @Override
+        public String lastKey() {
+            return requireKey(key(lastEntry()));
+        }
+
+        @Override
+        public Comparator<? super String> comparator() {
+            return descending ? Collections.reverseOrder() : null;
+        }
+
+        @Override
+        public Set<Entry<String, V>> entrySet() {
+            return new EntrySet<>(this);
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<String> navigableKeySet() {
+            return new KeySet(this);
+        }
+
+        @Override
+        public NavigableSet<String> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableMap<String, V> descendingMap() {
+            return new SubMap<>(map, lo, loInclusive, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableMap<String, V> subMap(String fromKey, boolean fromInclusive, String toKey,
+          boolean toInclusive) {
+            if (!inRange(fromKey, fromInclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if (!inRange(toKey, toInclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            int comparison = fromKey.compareTo(toKey);
+            if (descending ? comparison < 0 : comparison > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return descending ? new SubMap<>(map, toKey, toInclusive, fromKey, fromInclusive, true)
+              : new SubMap<>(map, fromKey, fromInclusive, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<String, V> headMap(String toKey, boolean inclusive) {
+            if (!inRange(toKey, inclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            return descending ? new SubMap<>(map, toKey, inclusive, hi, hiInclusive, true)
+              : new SubMap<>(map, lo, loInclusive, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<String, V> tailMap(String fromKey, boolean inclusive) {
+            if (!inRange(fromKey, inclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            return descending ? new SubMap<>(map, lo, loInclusive, fromKey, inclusive, true)
+              : new SubMap<>(map, fromKey, inclusive, hi, hiInclusive, false);
+        }
+
+        @Override
+        public SortedMap<String, V> subMap(String fromKey, String toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<String, V> headMap(String toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<String, V> tailMap(String fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+
+    /**
+     * Splits the map into subtrees. The remaining keys consist of the subtree currently being walked by the cursor,
+     * followed by the pending subtrees in order. Words of inner nodes that were split up are pending as single keys.
+     * The word counts of the nodes make all sizes exact.
+     */
+    private final class KeySpliterator implements Spliterator<String> {
+        private final Deque<TrieNode> pendingNodes = new ArrayDeque<>();
+        private final Deque<String> pendingKeys = new ArrayDeque<>();
+        // inner nodes whose children are pending separately
+        private final Set<TrieNode> wordOnly = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final int expectedModCount = modCount;
+        private TrieCursor cursor;
+        private long remaining;
+
+        private KeySpliterator() {
+            pendingNodes.add(root);
+            pendingKeys.add("");
+            remaining = root.wordCount;
+        }
+
+        private KeySpliterator(TrieCursor cursor, long remaining) {
+            this.cursor = cursor;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            Objects.requireNonNull(action);
+            while (true) {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (cursor != null) {
+                    if (cursor.advance()) {
+                        remaining--;
+                        action.accept(cursor.key());
+                        return true;
+                    }
+                    cursor = null;
+                }
+                if (pendingNodes.isEmpty()) {
+                    return false;
+                }
+                TrieNode node = pendingNodes.poll();
+                String key = pendingKeys.poll();
+                if (wordOnly.remove(node)) {
+                    remaining--;
+                    action.accept(key);
+                    return true;
+                }
+                cursor = new TrieCursor(node, key, false);
+            }
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            if (cursor == null && pendingNodes.size() == 1 && !wordOnly.contains(pendingNodes.peek())) {
+                expand();
+            }
+            int pending = pendingNodes.size();
+            if (pending < 2 && (cursor == null || pending < 1)) {
+                return null;
+            }
+            // the prefix of the remaining keys goes to the new spliterator
+            long moved = remaining;
+            KeySpliterator prefix = new KeySpliterator(cursor, 0);
+            cursor = null;
+            for (int i = 0; i < pending / 2; i++) {
+                TrieNode node = pendingNodes.poll();
+                if (wordOnly.remove(node)) {
+                    prefix.wordOnly.add(node);
+                }
+                prefix.pendingNodes.add(node);
+                prefix.pendingKeys.add(pendingKeys.poll());
+            }
+            remaining = 0;
+            for (TrieNode node : pendingNodes) {
+                remaining += wordOnly.contains(node) ? 1 : node.wordCount;
+            }
+            prefix.remaining = moved - remaining;
+            return prefix;
+        }
+
+        private void expand() {
+            TrieNode node = pendingNodes.poll();
+            String key = pendingKeys.poll();
+            if (node.isCompleteWord) {
+                wordOnly.add(node);
+                pendingNodes.add(node);
+                pendingKeys.add(key);
+            }
+            for (TrieNode child : node.children) {
+                pendingNodes.add(child);
+                pendingKeys.add(key + child.prefix);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+        }
+
+        /**
+         * @return null, since keys are kept in their natural order
+         */
+        @Override
+        public Comparator<? super String> getComparator() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package de.vogel612.ct;
+
+import static de.vogel612.util.StringHelper.commonPrefixLength;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe compressed prefix tree of Strings, where readers never take locks.
+ * <p>
+ * <p>The tree follows the design of a Ctrie: Every node is an indirection ({@link INode}) pointing to an immutable
+ * {@link MainNode} that holds the node's word flag and its outgoing edges. Writers build a new main node and publish
+ * it with a single compare-and-set on the indirection of the node they modify, so they only contend with writers
+ * modifying the same node. Readers follow whatever main nodes are published when they get there.</p>
+ * <p>
+ * <p>Edge labels are part of the parent's main node. Splitting an edge therefore only replaces the parent's main
+ * node, while the indirection of the child stays the same and concurrent writers below it are not lost. A leaf
+ * that loses its word is marked with a tombstone first, then unlinked from its parent. Writers that run into a
+ * tombstone help unlinking it and retry. Unlike {@link CompressedTrie}, non-word nodes with a single child are not
+ * merged back with that child.</p>
+ * <p>
+ * <p>Iteration is weakly consistent: it reflects every modification that happened before the iterator was created,
+ * and may or may not reflect later ones.</p>
+ */
+public class ConcurrentCompressedTrie extends AbstractSet<String> {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final String[] NO_LABELS = new String[0];
+    private static final INode[] NO_CHILDREN = new INode[0];
+
+    /**
+     * The immutable content of a node
+     */
+    private static final class MainNode {
+        final boolean word;
+        // sorted first chars of the labels
+        final char[] keys;
+        final String[] labels;
+        final INode[] children;
+
+        MainNode(boolean word, char[] keys, String[] labels, INode[] children) {
+            this.word = word;
+            this.keys = keys;
+            this.labels = labels;
+            this.children = children;
+        }
+
+        int indexOf(char first) {
+            return Arrays.binarySearch(keys, first);
+        }
+
+        MainNode withWord(boolean word) {
+            return new MainNode(word, keys, labels, children);
+        }
+
+        MainNode withEdge(int insertion, String label, INode child) {
+            final int size = keys.length;
+            char[] newKeys = new char[size + 1];
+            String[] newLabels = new String[size + 1];
+            INode[] newChildren = new INode[size + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertion);
+            System.arraycopy(labels, 0, newLabels, 0, insertion);
+            System.arraycopy(children, 0, newChildren, 0, insertion);
+            newKeys[insertion] = label.charAt(0);
+            newLabels[insertion] = label;
+            newChildren[insertion] = child;
+            System.arraycopy(keys, insertion, newKeys, insertion + 1, size - insertion);
+            System.arraycopy(labels, insertion, newLabels, insertion + 1, size - insertion);
+            System.arraycopy(children, insertion, newChildren, insertion + 1, size - insertion);
+            return new MainNode(word, newKeys, newLabels, newChildren);
+        }
+
+        MainNode withReplacedEdge(int index, String label, INode child) {
+            String[] newLabels = labels.clone();
+            INode[] newChildren = children.clone();
+            newLabels[index] = label;
+            newChildren[index] = child;
+            return new MainNode(word, keys, newLabels, newChildren);
+        }
+
+        MainNode withoutEdge(int index) {
+            final int size = keys.length;
+            char[] newKeys = new char[size - 1];
+            String[] newLabels = new String[size - 1];
+            INode[] newChildren = new INode[size - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, size - index - 1);
+            System.arraycopy(labels, index + 1, newLabels, index, size - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, size - index - 1);
+            return new MainNode(word, newKeys, newLabels, newChildren);
+        }
+    }
+
+    // marks a removed leaf, never published on the root
+    private static final MainNode TOMB = new MainNode(false, NO_KEYS, NO_LABELS, NO_CHILDREN);
+    private static final MainNode LEAF = new MainNode(true, NO_KEYS, NO_LABELS, NO_CHILDREN);
+
+    /**
+     * The stable identity of a node
+     */
+    private static final class INode {
+        private static final AtomicReferenceFieldUpdater<INode, MainNode> MAIN =
+          AtomicReferenceFieldUpdater.newUpdater(INode.class, MainNode.class, "main");
+
+        volatile MainNode main;
+
+        INode(MainNode main) {
+            this.main = main;
+        }
+
+        boolean cas(MainNode expected, MainNode update) {
+            return MAIN.compareAndSet(this, expected, update);
+        }
+    }
+
+    private final INode root = new INode(new MainNode(false, NO_KEYS, NO_LABELS, NO_CHILDREN));
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentCompressedTrie() {
+    }
+
+    public ConcurrentCompressedTrie(Collection<String> items) {
+        addAll(items);
+    }
+
+    /**
+     * Adds another String to this instance.
+     *
+     * @param word The new String to add to this instance
+     *
+     * @return true, if the collection was modified as a result of this method
+     */
+    @Override
+    public boolean add(String word) {
+        Objects.requireNonNull(word, "Cannot add a null string");
+        retry:
+        while (true) {
+            INode node = root;
+            int offset = 0;
+            while (true) {
+                final MainNode main = node.main;
+                if (main == TOMB) {
+                    clean(word);
+                    continue retry;
+                }
+                if (offset == word.length()) {
+                    if (main.word) {
+                        return false;
+                    }
+                    if (node.cas(main, main.withWord(true))) {
+                        size.increment();
+                        return true;
+                    }
+                    continue;
+                }
+                final int index = main.indexOf(word.charAt(offset));
+                if (index < 0) {
+                    MainNode update = main.withEdge(-(index + 1), word.substring(offset), new INode(LEAF));
+                    if (node.cas(main, update)) {
+                        size.increment();
+                        return true;
+                    }
+                    continue;
+                }
+                final String label = main.labels[index];
+                final int common = commonPrefixLength(label, 0, word, offset);
+                if (common == label.length()) {
+                    offset += common;
+                    node = main.children[index];
+                    continue;
+                }
+                if (node.cas(main, main.withReplacedEdge(index, label.substring(0, common),
+                  split(label.substring(common), main.children[index], word, offset + common)))) {
+                    size.increment();
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the node that is inserted into a split edge
+     *
+     * @param tail   The part of the split label below the new node
+     * @param child  The node the split edge pointed to
+     * @param word   The word being added
+     * @param offset The position in <tt>word</tt> at the new node
+     *
+     * @return The new node, pointing to <tt>child</tt> and possibly to a new leaf
+     */
+    private static INode split(String tail, INode child, String word, int offset) {
+        if (offset == word.length()) {
+            return new INode(new MainNode(true, new char[]{ tail.charAt(0) }, new String[]{ tail },
+              new INode[]{ child }));
+        }
+        final String rest = word.substring(offset);
+        final INode leaf = new INode(LEAF);
+        if (rest.charAt(0) < tail.charAt(0)) {
+            return new INode(new MainNode(false, new char[]{ rest.charAt(0), tail.charAt(0) },
+              new String[]{ rest, tail }, new INode[]{ leaf, child }));
+        }
+        return new INode(new MainNode(false, new char[]{ tail.charAt(0), rest.charAt(0) },
+          new String[]{ tail, rest }, new INode[]{ child, leaf }));
+    }
+
+    /**
+     * Checks whether this collection contains the given String, without taking any locks.
+     *
+     * @param o The item to check for
+     *
+     * @return true, if the item was found
+     */
+    @Override
+    public boolean contains(Object o) {
+        Objects.requireNonNull(o, "Cannot look for a null word");
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final String word = (String) o;
+        INode node = root;
+        int offset = 0;
+        while (true) {
+            final MainNode main = node.main;
+            if (main == TOMB) {
+                return false;
+            }
+            if (offset == word.length()) {
+                return main.word;
+            }
+            final int index = main.indexOf(word.charAt(offset));
+            if (index < 0) {
+                return false;
+            }
+            final String label = main.labels[index];
+            if (!word.regionMatches(offset, label, 0, label.length())) {
+                return false;
+            }
+            offset += label.length();
+            node = main.children[index];
+        }
+    }
+
+    /**
+     * Removes an item from this collection. Leaves without a word are unlinked from the tree.
+     *
+     * @param o The word to remove from the collection
+     *
+     * @return true, if the collection changed from invoking this method, false otherwise
+     */
+    @Override
+    public boolean remove(Object o) {
+        Objects.requireNonNull(o, "Cannot look for a null word");
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final String word = (String) o;
+        INode node = root;
+        int offset = 0;
+        while (true) {
+            final MainNode main = node.main;
+            if (main == TOMB) {
+                clean(word);
+                return false;
+            }
+            if (offset == word.length()) {
+                if (!main.word) {
+                    return false;
+                }
+                final MainNode update = node != root && main.keys.length == 0 ? TOMB : main.withWord(false);
+                if (node.cas(main, update)) {
+                    size.decrement();
+                    if (update == TOMB) {
+                        clean(word);
+                    }
+                    return true;
+                }
+                continue;
+            }
+            final int index = main.indexOf(word.charAt(offset));
+            if (index < 0) {
+                return false;
+            }
+            final String label = main.labels[index];
+            if (!word.regionMatches(offset, label, 0, label.length())) {
+                return false;
+            }
+            offset += label.length();
+            node = main.children[index];
+        }
+    }
+
+    /**
+     * Unlinks tombstoned nodes along the path of the given word. Nodes that lose their last edge without storing a
+     * word are tombstoned in turn.
+     *
+     * @param word The word whose path to clean
+     */
+    private void clean(String word) {
+        retry:
+        while (true) {
+            INode node = root;
+            int offset = 0;
+            while (offset < word.length()) {
+                final MainNode main = node.main;
+                if (main == TOMB) {
+                    // unlinked by someone else in the meantime
+                    continue retry;
+                }
+                final int index = main.indexOf(word.charAt(offset));
+                if (index < 0) {
+                    return;
+                }
+                final INode child = main.children[index];
+                if (child.main == TOMB) {
+                    MainNode update = main.withoutEdge(index);
+                    if (node != root && !update.word && update.keys.length == 0) {
+                        update = TOMB;
+                    }
+                    if (node.cas(main, update) && update != TOMB) {
+                        return;
+                    }
+                    continue retry;
+                }
+                final String label = main.labels[index];
+                if (!word.regionMatches(offset, label, 0, label.length())) {
+                    return;
+                }
+                offset += label.length();
+                node = child;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Returns the number of words in this collection.
+     *
+     * @return The sum of the concurrent counter, which is exact when no modification is in progress
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, size.sum());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.sum() == 0;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the words of this collection in ascending order.
+     *
+     * @return The iterator, supporting {@link Iterator#remove()}
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new WordIterator();
+    }
+
+    private final class WordIterator implements Iterator<String> {
+        private final Deque<MainNode> mains = new ArrayDeque<>();
+        private final Deque<int[]> positions = new ArrayDeque<>();
+        private final StringBuilder path = new StringBuilder();
+        private String next;
+        private String last;
+
+        private WordIterator() {
+            MainNode main = root.main;
+            mains.push(main);
+            // depth, next edge, word pending
+            positions.push(new int[]{ 0, 0, main.word ? 1 : 0 });
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (!mains.isEmpty()) {
+                final MainNode main = mains.peek();
+                final int[] position = positions.peek();
+                if (position[2] == 1) {
+                    position[2] = 0;
+                    path.setLength(position[0]);
+                    next = path.toString();
+                    return;
+                }
+                if (position[1] < main.keys.length) {
+                    final int edge = position[1]++;
+                    final MainNode child = main.children[edge].main;
+                    if (child == TOMB) {
+                        continue;
+                    }
+                    path.setLength(position[0]);
+                    path.append(main.labels[edge]);
+                    mains.push(child);
+                    positions.push(new int[]{ path.length(), 0, child.word ? 1 : 0 });
+                    continue;
+                }
+                mains.pop();
+                positions.pop();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentCompressedTrie.this.remove(last);
+            last = null;
+        }
+    }
+}
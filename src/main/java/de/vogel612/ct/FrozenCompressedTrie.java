@@ -0,0 +1,299 @@
+package de.vogel612.ct;
+
+import java.util.*;
+
+/**
+ * An immutable Trie that stores its nodes in a handful of primitive arrays instead of node objects.
+ * <p>
+ * <p>The nodes are numbered in breadth-first order, which gives the children of every node consecutive numbers.
+ * A node is then fully described by a few entries at its number:</p>
+ * <ul>
+ * <li>its prefix is the range from <tt>labelStart[node]</tt> to <tt>labelStart[node + 1]</tt> in the shared pool
+ * <tt>labels</tt></li>
+ * <li>its children are the nodes from <tt>firstChild[node]</tt> to <tt>firstChild[node + 1]</tt>, with the first
+ * chars of their prefixes in <tt>firstChars</tt>, which makes finding a child a binary search over a few adjacent
+ * chars</li>
+ * <li>whether it is a word is stored in the bitset <tt>words</tt>, its word count in <tt>wordCounts</tt></li>
+ * </ul>
+ * <p>
+ * <p>That takes about 14 bytes and the chars of the prefix per node, a small fraction of a {@link TrieNode} with its
+ * String, child index and their arrays. Created by {@link CompressedTrie#freeze()}.</p>
+ */
+public final class FrozenCompressedTrie extends AbstractSet<String> {
+
+    private final char[] labels;
+    private final int[] labelStart;
+    private final int[] firstChild;
+    private final char[] firstChars;
+    private final long[] words;
+    private final int[] wordCounts;
+
+    /**
+     * Flattens the tree below the given root
+     *
+     * @param root The root of the tree
+     */
+    FrozenCompressedTrie(TrieNode root) {
+        // breadth-first order, which is the numbering of the nodes
+        final List<TrieNode> order = new ArrayList<>();
+        order.add(root);
+        int labelLength = 0;
+        for (int i = 0; i < order.size(); i++) {
+            final TrieNode node = order.get(i);
+            labelLength += node.prefix.length();
+            order.addAll(node.children);
+        }
+        final int count = order.size();
+        labels = new char[labelLength];
+        labelStart = new int[count + 1];
+        firstChild = new int[count + 1];
+        firstChars = new char[count];
+        words = new long[(count + 63) >>> 6];
+        wordCounts = new int[count];
+
+        int label = 0;
+        int child = 1;
+        for (int i = 0; i < count; i++) {
+            final TrieNode node = order.get(i);
+            labelStart[i] = label;
+            node.prefix.getChars(0, node.prefix.length(), labels, label);
+            label += node.prefix.length();
+            firstChild[i] = child;
+            child += node.children.size();
+            firstChars[i] = node.prefix.isEmpty() ? 0 : node.prefix.charAt(0);
+            if (node.isCompleteWord) {
+                words[i >>> 6] |= 1L << i;
+            }
+            wordCounts[i] = node.wordCount;
+        }
+        labelStart[count] = label;
+        firstChild[count] = child;
+    }
+
+    private boolean isWord(int node) {
+        return (words[node >>> 6] & 1L << node) != 0;
+    }
+
+    /**
+     * Finds the child of a node whose prefix begins with the given char
+     *
+     * @return The number of the child or -1, if there is no such child
+     */
+    private int child(int node, char first) {
+        int low = firstChild[node];
+        int high = firstChild[node + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char key = firstChars[middle];
+            if (key < first) {
+                low = middle + 1;
+            } else if (key > first) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return wordCounts[0];
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        Objects.requireNonNull(o, "Cannot look for a null word");
+        return o instanceof String && contains((String) o);
+    }
+
+    /**
+     * Checks whether the given word is contained in this Trie
+     *
+     * @param word The word to look for
+     *
+     * @return true, if the word is contained
+     */
+    public boolean contains(String word) {
+        int node = 0;
+        int offset = 0;
+        while (true) {
+            final int start = labelStart[node];
+            final int length = labelStart[node + 1] - start;
+            if (word.length() - offset < length || !labelMatches(start, length, word, offset)) {
+                return false;
+            }
+            offset += length;
+            if (offset == word.length()) {
+                return isWord(node);
+            }
+            node = child(node, word.charAt(offset));
+            if (node < 0) {
+                return false;
+            }
+        }
+    }
+
+    private boolean labelMatches(int start, int length, String key, int offset) {
+        for (int i = 0; i < length; i++) {
+            if (labels[start + i] != key.charAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the node of the subtree whose words all start with the given prefix
+     *
+     * @param prefix The prefix to look for
+     * @param path   Receives the key of the found node's parent
+     *
+     * @return The number of the node or -1, if no word starts with the prefix
+     */
+    private int findSubtree(String prefix, StringBuilder path) {
+        int node = 0;
+        int offset = 0;
+        while (true) {
+            final int start = labelStart[node];
+            final int length = labelStart[node + 1] - start;
+            if (!labelMatches(start, Math.min(length, prefix.length() - offset), prefix, offset)) {
+                return -1;
+            }
+            if (offset + length >= prefix.length()) {
+                return node;
+            }
+            path.append(labels, start, length);
+            offset += length;
+            node = child(node, prefix.charAt(offset));
+            if (node < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Counts the words in this Trie that start with the given prefix
+     *
+     * @param prefix The prefix that the word has to begin with to be counted
+     *
+     * @return The number of words starting with <tt>prefix</tt>
+     */
+    public int countPrefix(String prefix) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        final int node = findSubtree(prefix, new StringBuilder());
+        return node < 0 ? 0 : wordCounts[node];
+    }
+
+    /**
+     * Finds all words in this Trie that start with the given prefix
+     *
+     * @param prefix The prefix that the words have to begin with
+     *
+     * @return The matching words in ascending order
+     */
+    public List<String> matches(String prefix) {
+        return matches(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the first words in this Trie that start with the given prefix
+     *
+     * @param prefix The prefix that the words have to begin with
+     * @param limit  The maximum number of words to return
+     *
+     * @return At most <tt>limit</tt> matching words in ascending order
+     *
+     * @throws IllegalArgumentException if <tt>limit</tt> is negative
+     */
+    public List<String> matches(String prefix, int limit) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative, was " + limit);
+        }
+        final StringBuilder path = new StringBuilder(prefix.length() + 16);
+        final int node = findSubtree(prefix, path);
+        if (node < 0 || limit == 0) {
+            return new ArrayList<>();
+        }
+        final List<String> result = new ArrayList<>(Math.min(limit, wordCounts[node]));
+        final WordIterator words = new WordIterator(node, path);
+        while (words.hasNext() && result.size() < limit) {
+            result.add(words.next());
+        }
+        return result;
+    }
+
+    /**
+     * Iterates the words in ascending order
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new WordIterator(0, new StringBuilder());
+    }
+
+    /**
+     * Walks a subtree depth-first on an explicit stack of node numbers.
+     */
+    private final class WordIterator implements Iterator<String> {
+        private final StringBuilder path;
+        private int[] nodes = new int[16];
+        // the next child of each node on the stack to visit
+        private int[] nextChild = new int[16];
+        // the length of the path in front of each node on the stack
+        private int[] depths = new int[16];
+        private int top;
+        private String next;
+
+        WordIterator(int root, StringBuilder path) {
+            this.path = path;
+            enter(root, path.length());
+            advance();
+        }
+
+        private void enter(int node, int depth) {
+            if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                nextChild = Arrays.copyOf(nextChild, top * 2);
+                depths = Arrays.copyOf(depths, top * 2);
+            }
+            nodes[top] = node;
+            nextChild[top] = firstChild[node];
+            depths[top] = depth;
+            top++;
+            path.setLength(depth);
+            path.append(labels, labelStart[node], labelStart[node + 1] - labelStart[node]);
+            if (isWord(node)) {
+                next = path.toString();
+            }
+        }
+
+        private void advance() {
+            while (next == null && top > 0) {
+                final int node = nodes[top - 1];
+                if (nextChild[top - 1] < firstChild[node + 1]) {
+                    final int child = nextChild[top - 1]++;
+                    enter(child, depths[top - 1] + labelStart[node + 1] - labelStart[node]);
+                } else {
+                    top--;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final String result = next;
+            next = null;
+            advance();
+            return result;
+        }
+    }
+}
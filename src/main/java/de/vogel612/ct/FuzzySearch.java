@@ -0,0 +1,120 @@
+package de.vogel612.ct;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the words within a Levenshtein distance of a query by walking the tree with the rows of the distance matrix.
+ * <p>
+ * <p>Row <tt>d</tt> holds the distances between the first <tt>d</tt> chars of the current path and every prefix of
+ * the query. Appending a char to the path computes the next row from the previous one, so the rows are kept on a
+ * stack by depth and the chars of a node's prefix are processed one by one. Once every entry of a row exceeds the
+ * bound, no continuation of the path can get back within it and the rest of the subtree is skipped. Distances are
+ * capped at one more than the bound.</p>
+ */
+final class FuzzySearch {
+
+    private final String query;
+    private final int maxEdits;
+    private final boolean prefixes;
+    private final StringBuilder path = new StringBuilder();
+    private int[][] rows;
+
+    /**
+     * Creates a search for the given query
+     *
+     * @param query    The query to compare the words with
+     * @param maxEdits The maximum number of inserted, deleted or replaced chars
+     * @param prefixes Whether a word matches when one of its prefixes is within the distance, instead of itself
+     */
+    FuzzySearch(String query, int maxEdits, boolean prefixes) {
+        this.query = query;
+        this.maxEdits = maxEdits;
+        this.prefixes = prefixes;
+        this.rows = new int[query.length() + maxEdits + 2][];
+        final int[] first = rows[0] = new int[query.length() + 1];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = Math.min(i, maxEdits + 1);
+        }
+    }
+
+    /**
+     * Collects the matching words of the tree in ascending order
+     *
+     * @param root   The root of the tree
+     * @param result Receives the matching words
+     */
+    void collect(TrieNode root, List<String> result) {
+        if (prefixes && rows[0][query.length()] <= maxEdits) {
+            // the empty prefix is already close enough
+            collectSubtree(root, 0, result);
+        } else {
+            walk(root, 0, result);
+        }
+    }
+
+    private void collectSubtree(TrieNode node, int depth, List<String> result) {
+        path.setLength(depth);
+        path.append(node.prefix);
+        final TrieCursor cursor = new TrieCursor(node, path, false);
+        while (cursor.advance()) {
+            result.add(cursor.key());
+        }
+        path.setLength(depth);
+    }
+
+    private void walk(TrieNode node, int depth, List<String> result) {
+        final int columns = query.length();
+        final String prefix = node.prefix;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (!advance(depth + i, prefix.charAt(i))) {
+                path.setLength(depth);
+                return;
+            }
+            if (prefixes && rows[depth + i + 1][columns] <= maxEdits) {
+                // every word below this point starts with a matching prefix
+                collectSubtree(node, depth, result);
+                return;
+            }
+        }
+        path.setLength(depth);
+        path.append(prefix);
+        final int end = depth + prefix.length();
+        if (node.isCompleteWord && rows[end][columns] <= maxEdits) {
+            result.add(path.toString());
+        }
+        for (TrieNode child : node.children) {
+            walk(child, end, result);
+        }
+        path.setLength(depth);
+    }
+
+    /**
+     * Computes the row for the path extended by the given char
+     *
+     * @param depth The depth of the row to extend
+     * @param c     The char appended to the path
+     *
+     * @return false, if all distances of the new row exceed the bound
+     */
+    private boolean advance(int depth, char c) {
+        if (depth + 1 == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        final int[] previous = rows[depth];
+        int[] row = rows[depth + 1];
+        if (row == null) {
+            row = rows[depth + 1] = new int[previous.length];
+        }
+        final int cap = maxEdits + 1;
+        row[0] = Math.min(previous[0] + 1, cap);
+        int minimum = row[0];
+        for (int j = 1; j < row.length; j++) {
+            final int replace = previous[j - 1] + (query.charAt(j - 1) == c ? 0 : 1);
+            final int distance = Math.min(Math.min(previous[j] + 1, row[j - 1] + 1), replace);
+            row[j] = Math.min(distance, cap);
+            minimum = Math.min(minimum, row[j]);
+        }
+        return minimum <= maxEdits;
+    }
+}
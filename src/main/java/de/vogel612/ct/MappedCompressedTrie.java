@@ -0,0 +1,419 @@
+package de.vogel612.ct;
+
+import static de.vogel612.ct.TrieSnapshot.*;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only Trie that answers queries directly from a memory-mapped snapshot file.
+ * <p>
+ * <p>The file is written by {@link CompressedTrie#writeTo(java.nio.channels.WritableByteChannel)}. Instead of
+ * rebuilding the nodes, queries decode the node records they visit from the mapped bytes and follow the child offsets
+ * stored in them. Opening a snapshot therefore takes constant time, the Trie does not occupy the heap and processes
+ * mapping the same file share a single copy in the page cache.</p>
+ * <p>
+ * <p>Instances are immutable and safe for use by multiple threads. The mapping stays valid until the instance is
+ * garbage collected, the file must not be modified while it is mapped.</p>
+ * <p>
+ * <p>Since queries only decode the records they visit, damage elsewhere in the file goes unnoticed until
+ * {@link #verify()} is called. A query that runs into a malformed record throws an {@link UncheckedIOException}
+ * caused by a {@link StreamCorruptedException}. It never follows a child offset that does not lead to an earlier
+ * record, so even a damaged file cannot make a query loop.</p>
+ */
+public final class MappedCompressedTrie {
+
+    // mapped regions are limited to 2GB, larger files are mapped in segments
+    private static final int SEGMENT_SHIFT = 30;
+
+    private final ByteBuffer[] segments;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final long length;
+    private final long rootOffset;
+    private final int size;
+
+    private MappedCompressedTrie(ByteBuffer[] segments, int segmentShift, long length) throws IOException {
+        this.segments = segments;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.length = length;
+        if (length < HEADER_SIZE + 1 + TRAILER_SIZE || getInt(0) != MAGIC) {
+            throw new StreamCorruptedException("Not a trie snapshot");
+        }
+        if (getByte(4) != VERSION) {
+            throw new StreamCorruptedException("Unsupported snapshot version " + getByte(4));
+        }
+        final long trailer = length - TRAILER_SIZE;
+        this.rootOffset = getLong(trailer);
+        this.size = getInt(trailer + 8);
+        if ((getByte(trailer - 1) & 0xFF) != END_OF_NODES || rootOffset < HEADER_SIZE
+          || rootOffset >= trailer - 1 || size < 0) {
+            throw new StreamCorruptedException("Malformed trie snapshot trailer");
+        }
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file The file to map
+     *
+     * @return A Trie reading the file
+     *
+     * @throws StreamCorruptedException if the file is not a snapshot
+     * @throws IOException              if the file cannot be mapped
+     * @implNote Only the header and trailer are checked, use {@link #verify()} to check the whole file
+     */
+    public static MappedCompressedTrie open(Path file) throws IOException {
+        return open(file, SEGMENT_SHIFT);
+    }
+
+    static MappedCompressedTrie open(Path file, int segmentShift) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long length = channel.size();
+            final long segmentSize = 1L << segmentShift;
+            final ByteBuffer[] segments = new ByteBuffer[(int) ((length + segmentSize - 1) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                final long start = (long) i << segmentShift;
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                  Math.min(segmentSize, length - start));
+                segments[i] = segment;
+            }
+            return new MappedCompressedTrie(segments, segmentShift, length);
+        }
+    }
+
+    /**
+     * Checks the whole file against the checksum stored in it.
+     *
+     * @throws StreamCorruptedException if the checksum does not match
+     * @implNote Reads every page of the file
+     */
+    public void verify() throws StreamCorruptedException {
+        final CRC32 checksum = new CRC32();
+        final long checked = length - 4;
+        for (int i = 0; i < segments.length; i++) {
+            final ByteBuffer segment = segments[i].duplicate();
+            final long start = (long) i << segmentShift;
+            segment.limit((int) Math.max(0, Math.min(segment.capacity(), checked - start)));
+            checksum.update(segment);
+        }
+        if ((int) checksum.getValue() != getInt(checked)) {
+            throw new StreamCorruptedException("Snapshot checksum mismatch");
+        }
+    }
+
+    /**
+     * @return The number of words in this Trie
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether the given word is contained in this Trie
+     *
+     * @param word The word to look for
+     *
+     * @return true, if the word is contained
+     *
+     * @implNote Decodes only the records on the path of the word and does not allocate
+     */
+    public boolean contains(String word) {
+        Objects.requireNonNull(word, "Cannot look for a null word");
+        long node = rootOffset;
+        int offset = 0;
+        while (true) {
+            final int flags = getByte(node) & 0xFF;
+            final int prefixLength = getVarint(node + 1);
+            final long prefixStart = node + 1 + varintSize(prefixLength);
+            if (word.length() - offset < prefixLength
+              || matchPrefix(flags, prefixStart, prefixLength, word, offset) < prefixLength) {
+                return false;
+            }
+            offset += prefixLength;
+            if (offset == word.length()) {
+                return (flags & FLAG_WORD) != 0;
+            }
+            node = child(node, flags, prefixStart + prefixLength * (long) charWidth(flags), word.charAt(offset));
+            if (node < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Counts the words in this Trie that start with the given prefix
+     *
+     * @param prefix The prefix that the word has to begin with to be counted
+     *
+     * @return The number of words starting with <tt>prefix</tt>
+     *
+     * @implNote Reads the word count stored in the record of the matching subtree
+     */
+    public int countPrefix(String prefix) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        final long node = findSubtree(prefix, null);
+        if (node < 0) {
+            return 0;
+        }
+        final int prefixLength = getVarint(node + 1);
+        return getVarint(node + 1 + varintSize(prefixLength) + prefixLength * (long) charWidth(getByte(node)));
+    }
+
+    /**
+     * Finds all words in this Trie that start with the given prefix
+     *
+     * @param prefix The prefix that the words have to begin with
+     *
+     * @return The matching words in ascending order
+     */
+    public List<String> matches(String prefix) {
+        return matches(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the first words in this Trie that start with the given prefix
+     *
+     * @param prefix The prefix that the words have to begin with
+     * @param limit  The maximum number of words to return
+     *
+     * @return At most <tt>limit</tt> matching words in ascending order
+     *
+     * @throws IllegalArgumentException if <tt>limit</tt> is negative
+     */
+    public List<String> matches(String prefix, int limit) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative, was " + limit);
+        }
+        final List<String> result = new ArrayList<>();
+        final StringBuilder path = new StringBuilder(prefix.length() + 16);
+        final long node = findSubtree(prefix, path);
+        if (node >= 0 && limit > 0) {
+            collect(node, path, result, limit);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the record of the subtree whose words all start with the given prefix
+     *
+     * @param prefix The prefix to look for
+     * @param path   Receives the key of the parent of the found record, may be null
+     *
+     * @return The offset of the found record or -1, if no word starts with the prefix
+     */
+    private long findSubtree(String prefix, StringBuilder path) {
+        long node = rootOffset;
+        int offset = 0;
+        while (true) {
+            final int flags = getByte(node) & 0xFF;
+            final int prefixLength = getVarint(node + 1);
+            final long prefixStart = node + 1 + varintSize(prefixLength);
+            final int compared = Math.min(prefixLength, prefix.length() - offset);
+            if (matchPrefix(flags, prefixStart, compared, prefix, offset) < compared) {
+                return -1;
+            }
+            if (offset + prefixLength >= prefix.length()) {
+                return node;
+            }
+            if (path != null) {
+                path.append(prefix, offset, offset + prefixLength);
+            }
+            offset += prefixLength;
+            node = child(node, flags, prefixStart + prefixLength * (long) charWidth(flags), prefix.charAt(offset));
+            if (node < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Collects the words of a subtree in ascending order, depth-first with a stack of the records still to visit, so
+     * that neither deep nor damaged trees can overflow the call stack
+     */
+    private void collect(long subtree, StringBuilder path, List<String> result, int limit) {
+        final int start = path.length();
+        long[] nodes = { subtree };
+        // the length of the path in front of each pending record
+        int[] depths = { start };
+        int top = 1;
+        while (top > 0 && result.size() < limit) {
+            top--;
+            final long node = nodes[top];
+            path.setLength(depths[top]);
+            final int flags = getByte(node) & 0xFF;
+            final int prefixLength = getVarint(node + 1);
+            long position = node + 1 + varintSize(prefixLength);
+            for (int i = 0; i < prefixLength; i++) {
+                path.append(getChar(flags, position + (long) i * charWidth(flags)));
+            }
+            if ((flags & FLAG_WORD) != 0) {
+                result.add(path.toString());
+            }
+            position += prefixLength * (long) charWidth(flags);
+            position += varintSize(getVarint(position));
+            final int count = getVarint(position);
+            final long deltas = position + varintSize(count) + count * 2L;
+            final int width = offsetWidth(flags);
+            if (nodes.length - top < count) {
+                nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, top + count));
+                depths = Arrays.copyOf(depths, nodes.length);
+            }
+            // pushed in reverse, so the first child is visited next
+            for (int i = count - 1; i >= 0; i--) {
+                nodes[top] = childRecord(node, getOffset(deltas + (long) i * width, width));
+                depths[top] = path.length();
+                top++;
+            }
+        }
+        path.setLength(start);
+    }
+
+    /**
+     * Compares the prefix of a record with a part of the key
+     *
+     * @return The number of leading chars that match, up to <tt>count</tt>
+     */
+    private int matchPrefix(int flags, long prefixStart, int count, CharSequence key, int offset) {
+        final int width = charWidth(flags);
+        for (int i = 0; i < count; i++) {
+            if (getChar(flags, prefixStart + (long) i * width) != key.charAt(offset + i)) {
+                return i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the child of a record whose prefix begins with the given char
+     *
+     * @param node        The offset of the record
+     * @param flags       The flags of the record
+     * @param countOffset The offset of the record's word count, following its prefix
+     * @param first       The first char of the child's prefix
+     *
+     * @return The offset of the child's record or -1, if there is no such child
+     */
+    private long child(long node, int flags, long countOffset, char first) {
+        final long position = countOffset + varintSize(getVarint(countOffset));
+        final int count = getVarint(position);
+        final long keys = position + varintSize(count);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char key = (char) getShort(keys + middle * 2L);
+            if (key < first) {
+                low = middle + 1;
+            } else if (key > first) {
+                high = middle - 1;
+            } else {
+                final int width = offsetWidth(flags);
+                return childRecord(node, getOffset(keys + count * 2L + (long) middle * width, width));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Resolves a child offset stored in a record. Records are stored in post-order, so a valid child always starts
+     * before its parent, and following children can never lead back to a record already visited.
+     *
+     * @param node  The offset of the parent's record
+     * @param delta The distance from the child's record back to the parent's
+     *
+     * @return The offset of the child's record
+     */
+    private static long childRecord(long node, long delta) {
+        if (delta <= 0 || node - delta < HEADER_SIZE) {
+            throw corrupted("Child offset of node at " + node + " is out of range");
+        }
+        return node - delta;
+    }
+
+    private static UncheckedIOException corrupted(String message) {
+        final StreamCorruptedException cause = new StreamCorruptedException(message);
+        return new UncheckedIOException(cause.getMessage(), cause);
+    }
+
+    private static int charWidth(int flags) {
+        return (flags & FLAG_WIDE) != 0 ? 2 : 1;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private byte getByte(long position) {
+        if (position < 0 || position >= length) {
+            throw corrupted("Record reaches beyond the end of the snapshot at " + position);
+        }
+        return segments[(int) (position >>> segmentShift)].get((int) (position & segmentMask));
+    }
+
+    private char getChar(int flags, long position) {
+        return (flags & FLAG_WIDE) != 0 ? (char) getShort(position) : (char) (getByte(position) & 0xFF);
+    }
+
+    private short getShort(long position) {
+        return (short) ((getByte(position) & 0xFF) << 8 | getByte(position + 1) & 0xFF);
+    }
+
+    private int getInt(long position) {
+        return getShort(position) << 16 | getShort(position + 2) & 0xFFFF;
+    }
+
+    private long getLong(long position) {
+        return (long) getInt(position) << 32 | getInt(position + 4) & 0xFFFFFFFFL;
+    }
+
+    private long getOffset(long position, int width) {
+        switch (width) {
+            case 1:
+                return getByte(position) & 0xFFL;
+            case 2:
+                return getShort(position) & 0xFFFFL;
+            case 4:
+                return getInt(position) & 0xFFFFFFFFL;
+            default:
+                return getLong(position);
+        }
+    }
+
+    private int getVarint(long position) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = getByte(position++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw corrupted("Malformed varint in trie snapshot at " + position);
+    }
+}
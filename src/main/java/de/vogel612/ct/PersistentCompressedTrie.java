@@ -0,0 +1,266 @@
+package de.vogel612.ct;
+
+import static de.vogel612.util.StringHelper.commonPrefixLength;
+
+import java.util.*;
+
+/**
+ * An immutable Trie whose updates return a new version that shares all unchanged nodes with the old one.
+ * <p>
+ * <p>{@link #with(String)} and {@link #without(String)} copy only the nodes on the path to the changed word, each of
+ * them together with its child index, and leave the original nodes untouched. An update thus costs time and memory
+ * proportional to the depth of the word times the fan-out of the nodes on its path, while every other node is
+ * shared by both versions. Nodes are never modified once a version has been created, so a version is a consistent
+ * snapshot that can be read by any number of threads while a writer derives new versions from it, for example by
+ * publishing the latest version through a volatile field. Taking a snapshot means keeping a reference, and a version
+ * is collected like any other object once it is no longer referenced, since no version refers to its
+ * predecessors.</p>
+ * <p>
+ * <p>As a Set, a version does not support the mutating methods of {@link Collection}. Words are iterated in
+ * ascending order.</p>
+ */
+public final class PersistentCompressedTrie extends AbstractSet<String> {
+
+    private static final PersistentCompressedTrie EMPTY =
+      new PersistentCompressedTrie(new TrieNode("", false, Collections.emptyList()));
+
+    final TrieNode root;
+
+    private PersistentCompressedTrie(TrieNode root) {
+        this.root = root;
+    }
+
+    /**
+     * @return The version without any words
+     */
+    public static PersistentCompressedTrie empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a version containing the given words
+     *
+     * @param words The words to contain
+     *
+     * @return The new version, which shares no nodes with any other
+     *
+     * @implNote Builds the tree bottom-up from the sorted words, like {@link CompressedTrie#builder()}, instead of
+     * adding them one version at a time. Words of a naturally ordered {@link SortedSet}, like a
+     * {@link CompressedTrie}, are not sorted again.
+     */
+    public static PersistentCompressedTrie copyOf(Collection<String> words) {
+        Objects.requireNonNull(words, "Cannot copy a null collection");
+        Iterable<String> sorted = words;
+        if (!(words instanceof SortedSet) || ((SortedSet<String>) words).comparator() != null) {
+            final List<String> list = new ArrayList<>(words);
+            Collections.sort(list);
+            sorted = list;
+        }
+        final TrieNode root = new TrieNode("", false, Collections.emptyList());
+        final CompressedTrie.Builder builder = new CompressedTrie.Builder(root, 0);
+        for (String word : sorted) {
+            builder.add(word);
+        }
+        builder.finish();
+        return new PersistentCompressedTrie(root);
+    }
+
+    /**
+     * Creates a copy of the given node that can be changed without affecting the original. The children are shared.
+     */
+    private static TrieNode copy(TrieNode node, String prefix) {
+        final TrieNode copy = new TrieNode(prefix, node.isCompleteWord, Collections.emptyList());
+        copy.children.addAll(node.children);
+        copy.wordCount = node.wordCount;
+        return copy;
+    }
+
+    /**
+     * Returns a version that contains the given word in addition to the words of this one
+     *
+     * @param word The word to add
+     *
+     * @return The new version, or this one if it already contains the word
+     */
+    public PersistentCompressedTrie with(String word) {
+        Objects.requireNonNull(word, "Cannot add a null word");
+        final TrieNode updated = with(root, word, 0);
+        return updated == root ? this : new PersistentCompressedTrie(updated);
+    }
+
+    /**
+     * Adds the remainder of a key below a node by copying the nodes on its path
+     *
+     * @param node   The node to add below, which is not modified
+     * @param key    The key to add
+     * @param offset The position in <tt>key</tt> right after the node's prefix
+     *
+     * @return A copy of the node containing the key, or the node itself if it contained the key before
+     */
+    private static TrieNode with(TrieNode node, String key, int offset) {
+        if (offset == key.length()) {
+            if (node.isCompleteWord) {
+                return node;
+            }
+            final TrieNode copy = copy(node, node.prefix);
+            copy.isCompleteWord = true;
+            copy.wordCount++;
+            return copy;
+        }
+        final TrieNode child = node.matchingChild(key, offset);
+        final TrieNode replacement;
+        if (child == null) {
+            replacement = new TrieNode(key.substring(offset));
+        } else {
+            final int common = commonPrefixLength(child.prefix, 0, key, offset);
+            if (common == child.prefix.length()) {
+                replacement = with(child, key, offset + common);
+                if (replacement == child) {
+                    return node;
+                }
+            } else {
+                // the child moves below a new node carrying the common part of its prefix
+                replacement = new TrieNode(child.prefix.substring(0, common), false, Collections.emptyList());
+                replacement.children.put(copy(child, child.prefix.substring(common)));
+                replacement.wordCount = child.wordCount + 1;
+                if (offset + common == key.length()) {
+                    replacement.isCompleteWord = true;
+                } else {
+                    replacement.children.put(new TrieNode(key.substring(offset + common)));
+                }
+            }
+        }
+        final TrieNode copy = copy(node, node.prefix);
+        copy.children.put(replacement);
+        copy.wordCount++;
+        return copy;
+    }
+
+    /**
+     * Returns a version that contains the words of this one except the given word
+     *
+     * @param word The word to remove
+     *
+     * @return The new version, or this one if it does not contain the word
+     */
+    public PersistentCompressedTrie without(String word) {
+        Objects.requireNonNull(word, "Cannot remove a null word");
+        final TrieNode updated = without(root, word, 0);
+        return updated == root ? this : new PersistentCompressedTrie(updated);
+    }
+
+    /**
+     * Removes a key below a node by copying the nodes on its path, keeping the tree compressed like
+     * {@link TrieNode#removeWord(CharSequence, int)}
+     *
+     * @param node   The node to remove below, which is not modified
+     * @param key    The key to remove
+     * @param offset The position in <tt>key</tt> right after the node's prefix
+     *
+     * @return A copy of the node without the key, or the node itself if it did not contain the key. Compacting the
+     * copy is up to its parent.
+     */
+    private static TrieNode without(TrieNode node, String key, int offset) {
+        if (offset == key.length()) {
+            if (!node.isCompleteWord) {
+                return node;
+            }
+            final TrieNode copy = copy(node, node.prefix);
+            copy.isCompleteWord = false;
+            copy.wordCount--;
+            return copy;
+        }
+        final TrieNode child = node.matchingChild(key, offset);
+        if (child == null || !child.prefixMatches(key, offset)) {
+            return node;
+        }
+        final TrieNode updated = without(child, key, offset + child.prefix.length());
+        if (updated == child) {
+            return node;
+        }
+        final TrieNode copy = copy(node, node.prefix);
+        if (updated.isCompleteWord) {
+            copy.children.put(updated);
+        } else if (updated.children.isEmpty()) {
+            copy.children.remove(updated.prefix.charAt(0));
+        } else if (updated.children.size() == 1) {
+            final TrieNode onlyChild = updated.children.at(0);
+            copy.children.put(copy(onlyChild, updated.prefix + onlyChild.prefix));
+        } else {
+            copy.children.put(updated);
+        }
+        copy.wordCount--;
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return root.wordCount;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        Objects.requireNonNull(o, "Cannot look for a null word");
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final TrieNode node = root.findNode((String) o, 0);
+        return node != null && node.isCompleteWord;
+    }
+
+    /**
+     * Counts the words in this version that start with the given prefix
+     *
+     * @param prefix The prefix that the word has to begin with to be counted
+     *
+     * @return The number of words starting with <tt>prefix</tt>
+     */
+    public int countPrefix(String prefix) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        final TrieNode subtree = root.findSubtree(prefix);
+        return subtree == null ? 0 : subtree.wordCount;
+    }
+
+    /**
+     * Finds all words in this version that start with the given prefix
+     *
+     * @param prefix The prefix that the words have to begin with
+     *
+     * @return The matching words in ascending order
+     */
+    public List<String> matches(String prefix) {
+        Objects.requireNonNull(prefix, "Cannot match a null prefix");
+        final Map.Entry<TrieNode, String> subtree = root.findMatchingSubtree(prefix);
+        final List<String> result = new ArrayList<>();
+        if (subtree != null) {
+            subtree.getKey().subtreeWordNodes(subtree.getValue(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Iterates the words in ascending order. The iterator does not support removal.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        final TrieCursor cursor = new TrieCursor(root, "", false);
+        return new Iterator<String>() {
+            private boolean pending = cursor.advance();
+
+            @Override
+            public boolean hasNext() {
+                return pending;
+            }
+
+            @Override
+            public String next() {
+                if (!pending) {
+                    throw new NoSuchElementException();
+                }
+                final String result = cursor.key();
+                pending = cursor.advance();
+                return result;
+            }
+        };
+    }
+}
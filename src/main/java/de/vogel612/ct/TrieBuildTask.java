@@ -0,0 +1,102 @@
+package de.vogel612.ct;
+
+import static de.vogel612.util.StringHelper.commonPrefixLength;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds the subtree of a range of sorted words, forking a task for every group of words that continues with the
+ * same char after their common prefix.
+ * <p>
+ * <p>All words of the range share the prefix that the first and the last word share, which becomes the key of the
+ * subtree's node. The words that continue behind it are grouped by the char that follows the common prefix. Since the
+ * words are sorted, the groups are consecutive ranges and their subtrees are the children of the node, in order.
+ * Ranges of at most {@link #THRESHOLD} words are built by a {@link CompressedTrie.Builder} instead.</p>
+ */
+final class TrieBuildTask extends RecursiveTask<TrieNode> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int THRESHOLD = 8192;
+
+    private final String[] words;
+    private final int from;
+    private final int to;
+    // the length of the key of the parent node
+    private final int depth;
+    private final int threshold;
+
+    /**
+     * Creates a task for the words in the given range
+     *
+     * @param words The sorted words
+     * @param from  The index of the first word of the range
+     * @param to    The index behind the last word of the range
+     * @param depth The number of chars all words in the range share with the key of the subtree's parent
+     */
+    TrieBuildTask(String[] words, int from, int to, int depth) {
+        this(words, from, to, depth, THRESHOLD);
+    }
+
+    TrieBuildTask(String[] words, int from, int to, int depth, int threshold) {
+        this.words = words;
+        this.from = from;
+        this.to = to;
+        this.depth = depth;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected TrieNode compute() {
+        final String first = words[from];
+        final int common = commonPrefixLength(first, 0, words[to - 1], 0);
+        final TrieNode node = new TrieNode(first.substring(depth, common), false, Collections.emptyList());
+        if (to - from <= threshold) {
+            final CompressedTrie.Builder builder = new CompressedTrie.Builder(node, common);
+            for (int i = from; i < to; i++) {
+                builder.add(words[i]);
+            }
+            builder.finish();
+            return node;
+        }
+        int start = from;
+        // only the first words can end with the common prefix, they may be repeated
+        while (start < to && words[start].length() == common) {
+            node.isCompleteWord = true;
+            start++;
+        }
+        final List<TrieBuildTask> groups = new ArrayList<>();
+        while (start < to) {
+            final int end = groupEnd(start, words[start].charAt(common), common);
+            groups.add(new TrieBuildTask(words, start, end, common, threshold));
+            start = end;
+        }
+        invokeAll(groups);
+        for (TrieBuildTask group : groups) {
+            node.children.put(group.join());
+        }
+        node.wordCount = node.isCompleteWord ? 1 : 0;
+        for (TrieNode child : node.children) {
+            node.wordCount += child.wordCount;
+        }
+        return node;
+    }
+
+    // binary search for the first word behind start that continues with another char
+    private int groupEnd(int start, char next, int position) {
+        int low = start + 1;
+        int high = to;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (words[middle].charAt(position) == next) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
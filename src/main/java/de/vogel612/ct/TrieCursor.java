@@ -0,0 +1,195 @@
+package de.vogel612.ct;
+
+import static de.vogel612.util.StringHelper.commonPrefixLength;
+
+import java.util.Arrays;
+
+/**
+ * Walks the words of a subtree in lexicographic order, either ascending or descending.
+ * <p>
+ * <p>The cursor keeps an explicit stack of the nodes on the path to the current word, together with the position of
+ * the next child to visit in each of them. The chars of that path are kept in a single buffer, so a word is only
+ * turned into a String when {@link #key()} is called. Both the stack frames and the buffer are reused, walking the
+ * subtree allocates only when the trie gets deeper than any path seen before.</p>
+ * <p>
+ * <p>A cursor does not notice modifications of the trie. Users need to {@link #seek(CharSequence, boolean)} again
+ * after modifying it.</p>
+ */
+final class TrieCursor {
+
+    private static final class Frame {
+        TrieNode node;
+        // length of the path including node.prefix
+        int depth;
+        // next child to visit
+        int position;
+        // whether node's own word still has to be visited
+        boolean wordPending;
+    }
+
+    private final TrieNode root;
+    private final int rootDepth;
+    private final boolean descending;
+    private final StringBuilder path;
+
+    private Frame[] frames = new Frame[8];
+    private int top;
+    private Frame current;
+
+    /**
+     * Creates a cursor over all words in the subtree of the given node, positioned before the first one.
+     *
+     * @param root       The root of the subtree to walk
+     * @param rootKey    The key associated with <tt>root</tt>, including its prefix
+     * @param descending Whether to walk the words in descending order
+     */
+    TrieCursor(TrieNode root, CharSequence rootKey, boolean descending) {
+        this.root = root;
+        this.rootDepth = rootKey.length();
+        this.descending = descending;
+        this.path = new StringBuilder(Math.max(16, rootDepth * 2)).append(rootKey);
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new Frame();
+        }
+        rewind();
+    }
+
+    /**
+     * Positions the cursor before the first word of its subtree.
+     */
+    void rewind() {
+        top = 0;
+        current = null;
+        path.setLength(rootDepth);
+        init(frames[0], root, rootDepth);
+    }
+
+    private void init(Frame frame, TrieNode node, int depth) {
+        frame.node = node;
+        frame.depth = depth;
+        frame.wordPending = node.isCompleteWord;
+        frame.position = descending ? node.children.size() - 1 : 0;
+    }
+
+    private Frame push(TrieNode child) {
+        final Frame parent = frames[top];
+        if (++top == frames.length) {
+            frames = Arrays.copyOf(frames, top * 2);
+            for (int i = top; i < frames.length; i++) {
+                frames[i] = new Frame();
+            }
+        }
+        path.setLength(parent.depth);
+        path.append(child.prefix);
+        final Frame frame = frames[top];
+        init(frame, child, path.length());
+        return frame;
+    }
+
+    /**
+     * Moves the cursor to the next word.
+     *
+     * @return true, if there was another word, false if the cursor is exhausted
+     */
+    boolean advance() {
+        while (top >= 0) {
+            final Frame frame = frames[top];
+            if (descending) {
+                if (frame.position >= 0) {
+                    push(frame.node.children.at(frame.position--));
+                    continue;
+                }
+                if (frame.wordPending) {
+                    frame.wordPending = false;
+                    current = frame;
+                    return true;
+                }
+            } else {
+                if (frame.wordPending) {
+                    frame.wordPending = false;
+                    current = frame;
+                    return true;
+                }
+                if (frame.position < frame.node.children.size()) {
+                    push(frame.node.children.at(frame.position++));
+                    continue;
+                }
+            }
+            top--;
+        }
+        current = null;
+        return false;
+    }
+
+    /**
+     * @return The node storing the current word
+     *
+     * @throws IllegalStateException if the cursor is not positioned on a word
+     */
+    TrieNode node() {
+        if (current == null) {
+            throw new IllegalStateException("Cursor is not positioned on a word");
+        }
+        return current.node;
+    }
+
+    /**
+     * Builds the current word.
+     *
+     * @return The word the cursor is positioned on
+     *
+     * @throws IllegalStateException if the cursor is not positioned on a word
+     */
+    String key() {
+        if (current == null) {
+            throw new IllegalStateException("Cursor is not positioned on a word");
+        }
+        path.setLength(current.depth);
+        return path.toString();
+    }
+
+    /**
+     * Positions the cursor so that the next call to {@link #advance()} moves to the first word that follows the given
+     * key in the direction of the cursor. The key itself does not need to be stored in the trie.
+     *
+     * @param key       The key to seek, must start with the key of the cursor's root
+     * @param inclusive Whether the key itself should be visited next, if it is stored
+     */
+    void seek(CharSequence key, boolean inclusive) {
+        rewind();
+        Frame frame = frames[0];
+        while (true) {
+            final int offset = frame.depth;
+            final ChildIndex children = frame.node.children;
+            if (offset == key.length()) {
+                // the frame's node is the key, all children follow it
+                frame.wordPending = inclusive && frame.node.isCompleteWord;
+                frame.position = descending ? -1 : 0;
+                return;
+            }
+            // the frame's word is a proper prefix of the key and precedes it
+            frame.wordPending = descending && frame.node.isCompleteWord;
+            final char next = key.charAt(offset);
+            final int position = children.ceilingPosition(next);
+            final TrieNode child = position < children.size() ? children.at(position) : null;
+            if (child == null || child.prefix.charAt(0) != next) {
+                frame.position = descending ? position - 1 : position;
+                return;
+            }
+            final int common = commonPrefixLength(child.prefix, 0, key, offset);
+            if (common == child.prefix.length()) {
+                frame.position = descending ? position - 1 : position + 1;
+                frame = push(child);
+                continue;
+            }
+            final boolean childFollows = offset + common == key.length()
+              || key.charAt(offset + common) < child.prefix.charAt(common);
+            if (descending) {
+                frame.position = childFollows ? position - 1 : position;
+            } else {
+                frame.position = childFollows ? position : position + 1;
+            }
+            return;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package de.vogel612.ct;
 
-import static de.vogel612.util.StringHelper.longestCommonPrefix;
+import static de.vogel612.util.StringHelper.commonPrefixLength;
 
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.function.IntConsumer;
 
 /**
  * Node to contain data for prefix-based searches.
@@ -38,43 +38,63 @@ import java.util.function.Predicate;
  * Created by vogel612 on 02.10.15.
  */
 class TrieNode {
-    final String prefix;
+    String prefix;
     boolean isCompleteWord;
-    final Set<TrieNode> children = new LinkedHashSet<>();
-
-    static Predicate<TrieNode> prefixMatching(String newString) {
-        return child -> newString.startsWith(child.prefix);
-    }
-
-    static Predicate<TrieNode> splitNodeMatching(String newString) {
-        return child -> child.prefix.startsWith(newString);
-    }
+    // number of words in the subtree, including this node's
+    int wordCount;
+    // value associated with the word, only used by maps
+    Object value;
+    // score of the word, 0 for words added without one
+    long score;
+    // the highest score of the words in the subtree, never less than it
+    long maxScore;
+    final ChildIndex children = new ChildIndex();
 
     public TrieNode(final String prefix) {
         Objects.requireNonNull(prefix, "Cannot create TrieNode without prefix");
         this.prefix = prefix;
         // assume true
         this.isCompleteWord = true;
+        this.wordCount = 1;
     }
 
     public TrieNode(final String prefix, final boolean isCompleteWord, final Collection<TrieNode> children) {
         this.prefix = prefix;
         this.isCompleteWord = isCompleteWord;
         this.children.addAll(children);
+        this.wordCount = isCompleteWord ? 1 : 0;
+        for (TrieNode child : this.children) {
+            this.wordCount += child.wordCount;
+        }
     }
 
     /**
-     * Finds and returns the first child matching the given condition
+     * Finds the only child that can continue a traversal of the given key at the given offset
+     *
+     * @param key    The key being traversed
+     * @param offset The position in <tt>key</tt> the child's prefix would have to start at, must be less than the
+     *               key's length
      *
-     * @param condition The condition that needs to apply to the child
+     * @return The child whose prefix starts with the char at <tt>offset</tt>, or null if there is none
      *
-     * @return An Optional containing the Child.
+     * @implNote The child is not guaranteed to match <tt>key</tt> beyond the first char
      */
-    Optional<TrieNode> matchingChild(Predicate<TrieNode> condition) {
-        Objects.requireNonNull(condition, "Cannot find prefixes for null strings");
-        return children.stream()
-          .filter(condition)
-          .findFirst();
+    TrieNode matchingChild(CharSequence key, int offset) {
+        Objects.requireNonNull(key, "Cannot find prefixes for null strings");
+        return children.get(key.charAt(offset));
+    }
+
+    /**
+     * Checks whether this node's prefix occurs in the given key at the given offset
+     *
+     * @param key    The key being traversed
+     * @param offset The position in <tt>key</tt> to compare this node's prefix to
+     *
+     * @return true, if the whole prefix of this node matches the key at <tt>offset</tt>
+     */
+    boolean prefixMatches(CharSequence key, int offset) {
+        return key.length() - offset >= prefix.length()
+          && commonPrefixLength(prefix, 0, key, offset) == prefix.length();
     }
 
     /**
@@ -86,136 +106,377 @@ class TrieNode {
      * @param newString The String to add as child into the subtree with root <tt>this</tt>. For relevant propagation,
      *                  this string will be shortened and given to the next matching child, effectively traversing the
      *                  Trie
+     *
+     * @return true, if the String was not contained in the subtree before
      */
-    public void addChild(final String newString) {
+    public boolean addChild(final String newString) {
         Objects.requireNonNull(newString, "Cannot add a null string");
-        Optional<TrieNode> prefixChild = matchingChild(prefixMatching(newString));
-        if (prefixChild.isPresent()) {
-            final TrieNode node = prefixChild.get();
-            prefixPresent(newString, node);
+        final int before = wordCount;
+        insert(newString, 0);
+        return wordCount != before;
+    }
+
+    /**
+     * Adds the remainder of a key, starting at the given offset, to the subtree below this node.
+     *
+     * @param key    The key to add
+     * @param offset The position in <tt>key</tt> right after this node's prefix
+     *
+     * @return The node storing the key. The word count of this node changes if, and only if, the key was not
+     * contained in the subtree before
+     *
+     * @implNote Maintains the word counts of all nodes on the path
+     */
+    TrieNode insert(final String key, final int offset) {
+        if (offset == key.length()) {
+            if (!isCompleteWord) {
+                isCompleteWord = true;
+                wordCount++;
+            }
+            return this;
+        }
+        final TrieNode node = matchingChild(key, offset);
+        final TrieNode wordNode;
+        if (node == null) {
+            wordNode = new TrieNode(key.substring(offset));
+            children.put(wordNode);
         } else {
-            prefixMissing(newString);
+            final int common = commonPrefixLength(node.prefix, 0, key, offset);
+            if (common == node.prefix.length()) {
+                // cut the prefix and hand it down again
+                final int before = node.wordCount;
+                wordNode = node.insert(key, offset + common);
+                if (node.wordCount == before) {
+                    return wordNode;
+                }
+            } else {
+                final TrieNode split = split(node, common);
+                if (offset + common == key.length()) {
+                    split.isCompleteWord = true;
+                    wordNode = split;
+                } else {
+                    wordNode = new TrieNode(key.substring(offset + common));
+                    split.children.put(wordNode);
+                }
+                split.wordCount++;
+            }
         }
+        wordCount++;
+        return wordNode;
     }
 
     /**
-     * Handles adding a child to this node when the {@link #prefixMatching(String)}
-     * does not apply to any children.
+     * Splits a child of this node after the given number of chars of its prefix.
      * <p>
-     * Checks for {@link #splitNodeMatching(String)} children to split and maintain or adds a new Child
-     *
-     * @param newString The String data that need to be added
-     */
-    private void prefixMissing(String newString) {
-        // need to check for children with longer, but matching prefix
-        Optional<TrieNode> existingChild = matchingChild(splitNodeMatching(newString));
-        if (existingChild.isPresent()) {
-            // split the prefix
-            TrieNode splitChild = existingChild.get();
-            String suffix = splitChild.prefix.substring(newString.length());
-            final TrieNode keeper = new TrieNode(suffix, splitChild.isCompleteWord, splitChild.children);
-            children.remove(splitChild);
-            children.add(new TrieNode(newString, true, Collections.singleton(keeper)));
-        } else {
-            // check for common substring children (only one should exist)
-            Map<String, TrieNode> currentMatch = findSubstringMatch(newString);
-            String newPrefix = currentMatch.keySet().iterator().next();
-            final TrieNode oldChild = currentMatch.get(newPrefix);
-            children.remove(oldChild);
+     * The child keeps its word flag and children, but is moved below a new, non-word node carrying the first part of
+     * its prefix. That new node takes the child's place.
+     *
+     * @param child The child node to split
+     * @param at    The length of the prefix part that stays above the split, must be less than the prefix length
+     *
+     * @return The new node that replaced <tt>child</tt>
+     */
+    private TrieNode split(TrieNode child, int at) {
+        final TrieNode split = new TrieNode(child.prefix.substring(0, at), false, Collections.emptyList());
+        child.prefix = child.prefix.substring(at);
+        split.children.put(child);
+        split.wordCount = child.wordCount;
+        split.maxScore = child.maxScore;
+        children.put(split);
+        return split;
+    }
 
-            final TrieNode newChild = buildNewChild(newPrefix, oldChild, newString);
-            children.add(newChild);
+    /**
+     * Removes a word from the subtree below this node and restores the compressed shape of the subtree: Nodes that
+     * neither store a word nor have children are removed, non-word nodes with a single child are merged with that
+     * child.
+     *
+     * @param key    The word to remove
+     * @param offset The position in <tt>key</tt> right after this node's prefix
+     *
+     * @return true, if the word was stored in the subtree before
+     *
+     * @implNote This node itself is never removed or merged, since that is up to its parent.
+     */
+    boolean removeWord(final CharSequence key, final int offset) {
+        if (offset == key.length()) {
+            if (!isCompleteWord) {
+                return false;
+            }
+            isCompleteWord = false;
+            value = null;
+            score = 0;
+            wordCount--;
+            if (maxScore != 0) {
+                updateMaxScore();
+            }
+            return true;
+        }
+        final TrieNode child = matchingChild(key, offset);
+        if (child == null || !child.prefixMatches(key, offset)
+          || !child.removeWord(key, offset + child.prefix.length())) {
+            return false;
+        }
+        compact(child);
+        wordCount--;
+        if (maxScore != 0) {
+            updateMaxScore();
         }
+        return true;
     }
 
-    private Map<String, TrieNode> findSubstringMatch(String newString) {
-        Map<String, TrieNode> currentMatch = Collections.singletonMap("", null);
+    /**
+     * Sets the score of a word stored in the subtree below this node.
+     *
+     * @param key    The word to score, it has to be stored in the subtree
+     * @param offset The position in <tt>key</tt> right after this node's prefix
+     * @param score  The new score of the word
+     *
+     * @return The previous score of the word
+     *
+     * @implNote Maintains the maximum scores of all nodes on the path. A node only looks at its children when the
+     * score that was its maximum decreases.
+     */
+    long setScore(final CharSequence key, final int offset, final long score) {
+        final long previous;
+        if (offset == key.length()) {
+            previous = this.score;
+            this.score = score;
+        } else {
+            final TrieNode child = matchingChild(key, offset);
+            previous = child.setScore(key, offset + child.prefix.length(), score);
+        }
+        if (score >= maxScore) {
+            maxScore = score;
+        } else if (previous == maxScore) {
+            updateMaxScore();
+        }
+        return previous;
+    }
+
+    private void updateMaxScore() {
+        long max = isCompleteWord ? score : 0;
         for (TrieNode child : children) {
-            String lcp = longestCommonPrefix(child.prefix, newString);
-            if (lcp.length() == 0) {
-                continue;
+            max = Math.max(max, child.maxScore);
+        }
+        maxScore = max;
+    }
+
+    /**
+     * Removes a child that became obsolete or merges it with its only child.
+     *
+     * @param child The child to check
+     */
+    private void compact(TrieNode child) {
+        if (child.isCompleteWord) {
+            return;
+        }
+        if (child.children.isEmpty()) {
+            children.remove(child.prefix.charAt(0));
+        } else if (child.children.size() == 1) {
+            final TrieNode onlyChild = child.children.iterator().next();
+            onlyChild.prefix = child.prefix + onlyChild.prefix;
+            children.put(onlyChild);
+        }
+    }
+
+    /**
+     * Finds the node at which the given key ends in the subtree below this node. The node is not guaranteed to
+     * store a complete word.
+     *
+     * @param key    The key to look for
+     * @param offset The position in <tt>key</tt> right after this node's prefix
+     *
+     * @return The node whose prefix ends exactly at the end of <tt>key</tt>, or null if there is none
+     */
+    TrieNode findNode(final CharSequence key, final int offset) {
+        TrieNode node = this;
+        int position = offset;
+        while (position < key.length()) {
+            final TrieNode child = node.matchingChild(key, position);
+            if (child == null || !child.prefixMatches(key, position)) {
+                return null;
             }
-            // there should only be one match, since matched prefixes are handed down
-            currentMatch = Collections.singletonMap(lcp, child);
-            break;
+            position += child.prefix.length();
+            node = child;
         }
-        return currentMatch;
+        return node;
     }
 
     /**
-     * Builds a new Child from a given old Child, a prefix and a String that's still to be added to the subtree of
-     * <tt>oldChild</tt>
+     * Finds the longest word in the subtree of this node that is a prefix of the given input, walking the input once.
      *
-     * @param newPrefix The smallest common prefix of newString and oldChild.prefix, also serving as prefix for the new
-     *                  Node
-     * @param oldChild  The old child node, either null, if no matching childnode is found, or a node that needs to be
-     *                  split.
-     * @param newString The remainder of the String to be added to the subtree. Includes the common prefix
+     * @param input The input to match, this node's prefix is not part of it
      *
-     * @return The newly built child node to replace oldChild in the Tree
+     * @return The length of the longest matching word, or -1 if no word is a prefix of the input
+     */
+    int longestPrefixLength(final CharSequence input) {
+        TrieNode node = this;
+        int position = 0;
+        int longest = isCompleteWord ? 0 : -1;
+        while (position < input.length()) {
+            final TrieNode child = node.matchingChild(input, position);
+            if (child == null || !child.prefixMatches(input, position)) {
+                break;
+            }
+            position += child.prefix.length();
+            node = child;
+            if (node.isCompleteWord) {
+                longest = position;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Finds all words in the subtree of this node that are prefixes of the given input, walking the input once.
      *
-     * @apiNote This new child keeps connections of the old child intact through
-     * {@link TrieNode#TrieNode(String, boolean, Collection)}
+     * @param input  The input to match, this node's prefix is not part of it
+     * @param action Receives the length of every matching word, shortest first
      */
-    private TrieNode buildNewChild(String newPrefix, TrieNode oldChild, String newString) {
-        if (newPrefix.equals("")) { // no common prefix found
-            return new TrieNode(newString);
-        } else {
-            final TrieNode keeper = new TrieNode(oldChild.prefix.substring(newPrefix.length()),
-              oldChild.isCompleteWord, oldChild.children);
-            final TrieNode insertNode = new TrieNode(newString.substring(newPrefix.length()));
-            return new TrieNode(newPrefix, false, Arrays.asList(keeper, insertNode));
+    void prefixWordLengths(final CharSequence input, final IntConsumer action) {
+        TrieNode node = this;
+        int position = 0;
+        if (isCompleteWord) {
+            action.accept(0);
+        }
+        while (position < input.length()) {
+            final TrieNode child = node.matchingChild(input, position);
+            if (child == null || !child.prefixMatches(input, position)) {
+                return;
+            }
+            position += child.prefix.length();
+            node = child;
+            if (node.isCompleteWord) {
+                action.accept(position);
+            }
         }
     }
 
     /**
-     * Handles adding a child to this node when the {@link #prefixMatching(String)} returned a matching Child
-     * <p>
-     * If the child node's prefix and the word to add match, the node is marked as complete word, else the
-     * word to add is cut and handed down to the node for adding.
+     * Finds the root of the subtree containing all words that start with a given prefix by walking it from this node.
+     *
+     * @param prefix The prefix to be matched, this node's prefix is not part of it
      *
-     * @param newString The Content to add to the subtree below this node
-     * @param node      The child node with matching prefix
+     * @return The subtree's root node, its prefix may extend past the end of <tt>prefix</tt>. null, if no word starts
+     * with the prefix
      */
-    private void prefixPresent(String newString, TrieNode node) {
-        if (node.prefix.length() == newString.length()) {
-            // if the prefix of the child and the remaining String are equally long,
-            // the node is already matching the word
-            node.isCompleteWord = true;
-        } else {
-            // cut the prefix and hand it down again
-            node.addChild(newString.substring(node.prefix.length()));
+    TrieNode findSubtree(final CharSequence prefix) {
+        TrieNode node = this;
+        int position = 0;
+        while (position < prefix.length()) {
+            final TrieNode child = node.matchingChild(prefix, position);
+            if (child == null) {
+                return null;
+            }
+            final int common = commonPrefixLength(child.prefix, 0, prefix, position);
+            if (common < child.prefix.length()) {
+                return position + common == prefix.length() ? child : null;
+            }
+            position += common;
+            node = child;
         }
+        return node;
     }
 
     /**
-     * finds the subtree matching a given prefix while maintaining the traversed
-     * nodes of the prefix-tree by recursively invoking itself on the matching children.
+     * Counts the words in the subtree below this node that are lexicographically less than the given key. The key
+     * does not need to be stored in the subtree.
+     *
+     * @param key The key to compare to, this node's prefix is not part of it
      *
-     * @param currentWord     The current word as coming from traversal state
-     * @param remainingPrefix The remaining prefix to be matched
+     * @return The number of words less than <tt>key</tt>
      *
-     * @return A singleton-map containing the subtree's root node and the word associated with the traversal
+     * @implNote Walks a single path and sums up the word counts of the subtrees left of it, which costs a pass over
+     * the smaller siblings on every level
      */
-    Map<TrieNode, String> findMatchingSubtree(final String currentWord, final String remainingPrefix) {
-        if (remainingPrefix.equals("")) {
-            return Collections.singletonMap(this, currentWord);
+    int rank(final CharSequence key) {
+        TrieNode node = this;
+        int offset = 0;
+        int rank = 0;
+        while (offset < key.length()) {
+            if (node.isCompleteWord) {
+                rank++;
+            }
+            final char next = key.charAt(offset);
+            final ChildIndex children = node.children;
+            final int position = children.ceilingPosition(next);
+            for (int i = 0; i < position; i++) {
+                rank += children.at(i).wordCount;
+            }
+            if (position == children.size() || children.at(position).prefix.charAt(0) != next) {
+                return rank;
+            }
+            final TrieNode child = children.at(position);
+            final int common = commonPrefixLength(child.prefix, 0, key, offset);
+            if (common < child.prefix.length()) {
+                final boolean childFollows = offset + common == key.length()
+                  || key.charAt(offset + common) < child.prefix.charAt(common);
+                return childFollows ? rank : rank + child.wordCount;
+            }
+            offset += common;
+            node = child;
         }
+        return rank;
+    }
 
-        Optional<TrieNode> matchingChild = matchingChild(prefixMatching(remainingPrefix));
-        if (!matchingChild.isPresent()) {
-            // Check for partial prefix match
-            Optional<TrieNode> existingChild = matchingChild(splitNodeMatching(remainingPrefix));
-            if (existingChild.isPresent()) {
-                return Collections.singletonMap(existingChild.get(), currentWord + existingChild.get().prefix);
+    /**
+     * Finds the word at the given index in the lexicographic order of the words in the subtree below this node.
+     *
+     * @param index The index of the word, between 0 and {@link #wordCount} exclusive
+     * @param out   The builder to append the word to, this node's prefix is not appended
+     *
+     * @return The given builder
+     */
+    StringBuilder select(int index, final StringBuilder out) {
+        if (index < 0 || index >= wordCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + wordCount);
+        }
+        TrieNode node = this;
+        while (!node.isCompleteWord || index > 0) {
+            if (node.isCompleteWord) {
+                index--;
+            }
+            for (TrieNode child : node.children) {
+                if (index < child.wordCount) {
+                    out.append(child.prefix);
+                    node = child;
+                    break;
+                }
+                index -= child.wordCount;
             }
-            return Collections.singletonMap(null, currentWord);
         }
-        TrieNode child = matchingChild.get();
-        if (child.prefix.equals(remainingPrefix)) {
-            return Collections.singletonMap(child, currentWord + remainingPrefix);
+        return out;
+    }
+
+    /**
+     * finds the subtree containing all words that start with a given prefix by walking it from this node.
+     *
+     * @param prefix The prefix to be matched, this node's prefix is not part of it
+     *
+     * @return An entry of the subtree's root node and the word associated with it, or null if no word starts with the
+     * prefix
+     */
+    Map.Entry<TrieNode, String> findMatchingSubtree(final String prefix) {
+        TrieNode node = this;
+        int position = 0;
+        while (position < prefix.length()) {
+            final TrieNode child = node.matchingChild(prefix, position);
+            if (child == null) {
+                return null;
+            }
+            final int common = commonPrefixLength(child.prefix, 0, prefix, position);
+            if (common < child.prefix.length()) {
+                // Check for partial prefix match
+                if (position + common == prefix.length()) {
+                    return new AbstractMap.SimpleImmutableEntry<>(child, prefix + child.prefix.substring(common));
+                }
+                return null;
+            }
+            position += common;
+            node = child;
         }
-        return child.findMatchingSubtree(currentWord + child.prefix, remainingPrefix.substring(child.prefix.length()));
+        return new AbstractMap.SimpleImmutableEntry<>(node, prefix);
     }
 
     /**
@@ -226,11 +487,17 @@ class TrieNode {
      * @param out         The collection to contain the results
      */
     void subtreeWordNodes(String currentWord, Collection<String> out) {
+        subtreeWordNodes(new StringBuilder(currentWord), out);
+    }
+
+    private void subtreeWordNodes(StringBuilder currentWord, Collection<String> out) {
         if (isCompleteWord) {
-            out.add(currentWord);
+            out.add(currentWord.toString());
         }
+        final int length = currentWord.length();
         for (TrieNode child : children) {
-            child.subtreeWordNodes(currentWord + child.prefix, out);
+            child.subtreeWordNodes(currentWord.append(child.prefix), out);
+            currentWord.setLength(length);
         }
     }
 
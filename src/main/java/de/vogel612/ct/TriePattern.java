@@ -0,0 +1,736 @@
+package de.vogel612.ct;
+
+import java.util.*;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A pattern over whole keys, compiled to a deterministic automaton that can be run along the paths of a Trie.
+ * <p>
+ * <p>Patterns are either globs, where <tt>*</tt> stands for any sequence of chars and <tt>?</tt> for a single char,
+ * or regular expressions with the usual operators: alternation, grouping, the quantifiers <tt>*</tt>, <tt>+</tt>,
+ * <tt>?</tt> and <tt>{m,n}</tt>, <tt>.</tt> for any char, char classes and the escapes <tt>\d \w \s</tt> with their
+ * negations. A pattern always has to match the complete key, so there are no anchors, and it has no capturing
+ * groups, backreferences or lookaround.</p>
+ * <p>
+ * <p>The pattern is first compiled to a nondeterministic automaton, whose sets of states become the states of the
+ * deterministic one. Those are only built when a traversal first reaches them, since a Trie rarely leads the
+ * automaton into more than a few of them. The empty set is the dead state: once a path reaches it, no key below that
+ * path can match and the subtree is skipped.</p>
+ * <p>
+ * <p>Counted repetitions are expanded into copies of their term, so the nondeterministic automaton of a pattern is
+ * limited to 65536 states, and patterns that would exceed it are rejected.</p>
+ * <p>
+ * <p>Since its automaton is built lazily, a pattern must not be used by several threads at once.</p>
+ */
+public final class TriePattern {
+
+    private static final int DEAD = 0;
+    private static final int INITIAL = 1;
+    private static final int UNKNOWN = -1;
+    private static final int TABLE_RANGE = 128;
+    private static final int UNBOUNDED = -1;
+    private static final int MAX_NFA_STATES = 1 << 16;
+    private static final char[] ANY = { Character.MIN_VALUE, Character.MAX_VALUE };
+
+    private final String source;
+
+    // the nondeterministic automaton, accepting in state 'accept'
+    private final int accept;
+    private final int[][] epsilons;
+    private final char[][][] edgeChars;
+    private final int[][] edgeTargets;
+
+    // the deterministic automaton, built on demand
+    private final Map<BitSet, Integer> register = new HashMap<>();
+    private final List<BitSet> states = new ArrayList<>();
+    private final List<Map<Character, Integer>> wideTransitions = new ArrayList<>();
+    private int[][] transitions = new int[8][];
+    private boolean[] accepting = new boolean[8];
+
+    private TriePattern(String source, Term term) {
+        this.source = source;
+        final Nfa nfa = new Nfa();
+        final int start = nfa.newState();
+        accept = term.compile(nfa, start);
+        final int count = nfa.epsilons.size();
+        epsilons = new int[count][];
+        edgeChars = new char[count][][];
+        edgeTargets = new int[count][];
+        for (int i = 0; i < count; i++) {
+            epsilons[i] = toArray(nfa.epsilons.get(i));
+            edgeChars[i] = nfa.edgeChars.get(i).toArray(new char[0][]);
+            edgeTargets[i] = toArray(nfa.edgeTargets.get(i));
+        }
+        state(new BitSet());
+        final BitSet initial = new BitSet();
+        initial.set(start);
+        state(closure(initial));
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        final int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Compiles a glob, in which <tt>*</tt> matches any sequence of chars, <tt>?</tt> matches any single char and a
+     * backslash takes the following char literally.
+     *
+     * @param glob The glob to compile
+     *
+     * @return The compiled pattern
+     *
+     * @throws PatternSyntaxException if the glob ends in an unescaped backslash
+     */
+    public static TriePattern glob(String glob) {
+        Objects.requireNonNull(glob, "Cannot compile a null glob");
+        final List<Term> parts = new ArrayList<>();
+        boolean star = false;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == '*') {
+                // consecutive stars match the same keys as a single one
+                if (!star) {
+                    parts.add(new Repetition(new CharClass(ANY), 0, UNBOUNDED));
+                }
+            } else if (c == '?') {
+                parts.add(new CharClass(ANY));
+            } else if (c == '\\') {
+                if (++i == glob.length()) {
+                    throw new PatternSyntaxException("Unescaped trailing backslash", glob, i - 1);
+                }
+                parts.add(CharClass.of(glob.charAt(i)));
+            } else {
+                parts.add(CharClass.of(c));
+            }
+            star = c == '*';
+        }
+        return new TriePattern(glob, new Concatenation(parts));
+    }
+
+    /**
+     * Compiles a regular expression that has to match complete keys
+     *
+     * @param regex The regular expression to compile
+     *
+     * @return The compiled pattern
+     *
+     * @throws PatternSyntaxException if the expression is malformed or uses an unsupported construct
+     */
+    public static TriePattern regex(String regex) {
+        Objects.requireNonNull(regex, "Cannot compile a null regex");
+        return new TriePattern(regex, new Parser(regex).parse());
+    }
+
+    /**
+     * Checks whether the given key matches this pattern
+     *
+     * @param key The key to check
+     *
+     * @return true, if the pattern matches the complete key
+     */
+    public boolean matches(CharSequence key) {
+        int state = INITIAL;
+        for (int i = 0; i < key.length() && state != DEAD; i++) {
+            state = step(state, key.charAt(i));
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Collects the keys of the tree that match this pattern, skipping every subtree whose path leads the automaton
+     * into the dead state
+     *
+     * @param root   The root of the tree
+     * @param result Receives the matching keys in ascending order
+     */
+    void collect(TrieNode root, List<String> result) {
+        walk(root, INITIAL, new StringBuilder(), result);
+    }
+
+    private void walk(TrieNode node, int state, StringBuilder path, List<String> result) {
+        final String prefix = node.prefix;
+        for (int i = 0; i < prefix.length(); i++) {
+            state = step(state, prefix.charAt(i));
+            if (state == DEAD) {
+                return;
+            }
+        }
+        final int depth = path.length();
+        path.append(prefix);
+        if (node.isCompleteWord && accepting[state]) {
+            result.add(path.toString());
+        }
+        for (TrieNode child : node.children) {
+            walk(child, state, path, result);
+        }
+        path.setLength(depth);
+    }
+
+    /**
+     * @return The number of states of the deterministic automaton built so far, including the dead state
+     */
+    int stateCount() {
+        return states.size();
+    }
+
+    private int step(int state, char c) {
+        if (c < TABLE_RANGE) {
+            int next = transitions[state][c];
+            if (next == UNKNOWN) {
+                next = transitions[state][c] = computeStep(state, c);
+            }
+            return next;
+        }
+        final Map<Character, Integer> wide = wideTransitions.get(state);
+        Integer next = wide.get(c);
+        if (next == null) {
+            next = computeStep(state, c);
+            wide.put(c, next);
+        }
+        return next;
+    }
+
+    private int computeStep(int state, char c) {
+        if (state == DEAD) {
+            return DEAD;
+        }
+        final BitSet current = states.get(state);
+        final BitSet next = new BitSet();
+        for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+            for (int edge = 0; edge < edgeTargets[s].length; edge++) {
+                if (CharClass.contains(edgeChars[s][edge], c)) {
+                    next.set(edgeTargets[s][edge]);
+                }
+            }
+        }
+        return state(closure(next));
+    }
+
+    private BitSet closure(BitSet set) {
+        final Deque<Integer> pending = new ArrayDeque<>();
+        for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+            pending.push(s);
+        }
+        while (!pending.isEmpty()) {
+            for (int target : epsilons[pending.pop()]) {
+                if (!set.get(target)) {
+                    set.set(target);
+                    pending.push(target);
+                }
+            }
+        }
+        return set;
+    }
+
+    // finds the deterministic state for a closed set of states, registering it if it is new
+    private int state(BitSet set) {
+        Integer state = register.get(set);
+        if (state != null) {
+            return state;
+        }
+        state = states.size();
+        register.put(set, state);
+        states.add(set);
+        wideTransitions.add(new HashMap<>());
+        if (state == transitions.length) {
+            transitions = Arrays.copyOf(transitions, state * 2);
+            accepting = Arrays.copyOf(accepting, state * 2);
+        }
+        transitions[state] = new int[TABLE_RANGE];
+        Arrays.fill(transitions[state], UNKNOWN);
+        accepting[state] = set.get(accept);
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * The nondeterministic automaton while it is being built
+     */
+    private static final class Nfa {
+        final List<List<Integer>> epsilons = new ArrayList<>();
+        final List<List<char[]>> edgeChars = new ArrayList<>();
+        final List<List<Integer>> edgeTargets = new ArrayList<>();
+
+        int newState() {
+            epsilons.add(new ArrayList<>());
+            edgeChars.add(new ArrayList<>());
+            edgeTargets.add(new ArrayList<>());
+            return epsilons.size() - 1;
+        }
+
+        void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        void edge(int from, char[] chars, int to) {
+            edgeChars.get(from).add(chars);
+            edgeTargets.get(from).add(to);
+        }
+    }
+
+    /**
+     * A parsed part of a pattern
+     */
+    private abstract static class Term {
+
+        /**
+         * Adds the states matching this term to the automaton
+         *
+         * @param nfa  The automaton to add to
+         * @param from The state to start matching in
+         *
+         * @return The state reached after matching the term
+         */
+        abstract int compile(Nfa nfa, int from);
+
+        /**
+         * @return The number of states that {@link #compile(Nfa, int)} adds to the automaton
+         */
+        abstract long stateCount();
+    }
+
+    /**
+     * A single char out of a set, stored as sorted and disjoint pairs of first and last char
+     */
+    private static final class CharClass extends Term {
+        final char[] ranges;
+
+        CharClass(char[] ranges) {
+            this.ranges = ranges;
+        }
+
+        static CharClass of(char c) {
+            return new CharClass(new char[] { c, c });
+        }
+
+        static boolean contains(char[] ranges, char c) {
+            for (int i = 0; i < ranges.length && ranges[i] <= c; i += 2) {
+                if (c <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int compile(Nfa nfa, int from) {
+            final int to = nfa.newState();
+            nfa.edge(from, ranges, to);
+            return to;
+        }
+
+        @Override
+        long stateCount() {
+            return 1;
+        }
+    }
+
+    private static final class Concatenation extends Term {
+        final List<Term> parts;
+
+        Concatenation(List<Term> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        int compile(Nfa nfa, int from) {
+            int state = from;
+            for (Term part : parts) {
+                state = part.compile(nfa, state);
+            }
+            return state;
+        }
+
+        @Override
+        long stateCount() {
+            long count = 0;
+            for (Term part : parts) {
+                count += part.stateCount();
+            }
+            return count;
+        }
+    }
+
+    private static final class Alternation extends Term {
+        final List<Term> branches;
+
+        Alternation(List<Term> branches) {
+            this.branches = branches;
+        }
+
+        @Override
+        int compile(Nfa nfa, int from) {
+            final int to = nfa.newState();
+            for (Term branch : branches) {
+                nfa.epsilon(branch.compile(nfa, from), to);
+            }
+            return to;
+        }
+
+        @Override
+        long stateCount() {
+            long count = 1;
+            for (Term branch : branches) {
+                count += branch.stateCount();
+            }
+            return count;
+        }
+    }
+
+    private static final class Repetition extends Term {
+        final Term term;
+        final int min;
+        final int max;
+
+        Repetition(Term term, int min, int max) {
+            this.term = term;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        int compile(Nfa nfa, int from) {
+            int state = from;
+            for (int i = 0; i < min; i++) {
+                state = term.compile(nfa, state);
+            }
+            if (max == UNBOUNDED) {
+                final int loop = nfa.newState();
+                nfa.epsilon(state, loop);
+                nfa.epsilon(term.compile(nfa, loop), loop);
+                return loop;
+            }
+            final int to = nfa.newState();
+            nfa.epsilon(state, to);
+            for (int i = min; i < max; i++) {
+                state = term.compile(nfa, state);
+                nfa.epsilon(state, to);
+            }
+            return to;
+        }
+
+        @Override
+        long stateCount() {
+            final long copies = max == UNBOUNDED ? min + 1 : max;
+            return copies * term.stateCount() + 1;
+        }
+    }
+
+    /**
+     * Collects ranges of chars and turns them into the sorted, disjoint pairs of a {@link CharClass}
+     */
+    private static final class RangeSet {
+        private final List<int[]> ranges = new ArrayList<>();
+
+        void add(int first, int last) {
+            ranges.add(new int[] { first, last });
+        }
+
+        void addAll(char[] pairs) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                add(pairs[i], pairs[i + 1]);
+            }
+        }
+
+        char[] toRanges(boolean negate) {
+            ranges.sort(Comparator.comparingInt(range -> range[0]));
+            final List<int[]> merged = new ArrayList<>();
+            for (int[] range : ranges) {
+                final int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && range[0] <= last[1] + 1) {
+                    last[1] = Math.max(last[1], range[1]);
+                } else {
+                    merged.add(new int[] { range[0], range[1] });
+                }
+            }
+            final StringBuilder result = new StringBuilder();
+            if (negate) {
+                int next = Character.MIN_VALUE;
+                for (int[] range : merged) {
+                    if (next < range[0]) {
+                        result.append((char) next).append((char) (range[0] - 1));
+                    }
+                    next = range[1] + 1;
+                }
+                if (next <= Character.MAX_VALUE) {
+                    result.append((char) next).append(Character.MAX_VALUE);
+                }
+            } else {
+                for (int[] range : merged) {
+                    result.append((char) range[0]).append((char) range[1]);
+                }
+            }
+            return result.toString().toCharArray();
+        }
+    }
+
+    /**
+     * A recursive descent parser for regular expressions
+     */
+    private static final class Parser {
+        private final String regex;
+        private int position;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Term parse() {
+            final Term term = alternation();
+            if (position < regex.length()) {
+                throw error("Unmatched closing ')'");
+            }
+            return checkSize(term);
+        }
+
+        private PatternSyntaxException error(String description) {
+            return new PatternSyntaxException(description, regex, position);
+        }
+
+        private boolean at(char c) {
+            return position < regex.length() && regex.charAt(position) == c;
+        }
+
+        private Term alternation() {
+            final List<Term> branches = new ArrayList<>();
+            branches.add(concatenation());
+            while (at('|')) {
+                position++;
+                branches.add(concatenation());
+            }
+            return branches.size() == 1 ? branches.get(0) : new Alternation(branches);
+        }
+
+        private Term concatenation() {
+            final List<Term> parts = new ArrayList<>();
+            while (position < regex.length() && !at('|') && !at(')')) {
+                parts.add(repetition());
+            }
+            return parts.size() == 1 ? parts.get(0) : new Concatenation(parts);
+        }
+
+        private Term repetition() {
+            Term term = atom();
+            while (position < regex.length()) {
+                final char c = regex.charAt(position);
+                if (c == '*') {
+                    term = checkSize(new Repetition(term, 0, UNBOUNDED));
+                } else if (c == '+') {
+                    term = checkSize(new Repetition(term, 1, UNBOUNDED));
+                } else if (c == '?') {
+                    term = checkSize(new Repetition(term, 0, 1));
+                } else if (c == '{') {
+                    term = counted(term);
+                    continue;
+                } else {
+                    break;
+                }
+                position++;
+            }
+            return term;
+        }
+
+        private Term counted(Term term) {
+            position++;
+            final int min = number();
+            int max = min;
+            if (at(',')) {
+                position++;
+                max = at('}') ? UNBOUNDED : number();
+            }
+            if (!at('}')) {
+                throw error("Unclosed counted closure");
+            }
+            position++;
+            if (max != UNBOUNDED && max < min) {
+                throw error("Illegal repetition range");
+            }
+            return checkSize(new Repetition(term, min, max));
+        }
+
+        /**
+         * Rejects a term whose automaton would exceed the state limit. Checking every repetition as soon as
+         * it is parsed keeps nested quantifiers from multiplying beyond the range of a long.
+         */
+        private Term checkSize(Term term) {
+            if (term.stateCount() >= MAX_NFA_STATES) {
+                throw error("Pattern too large, it would need more than " + MAX_NFA_STATES + " states");
+            }
+            return term;
+        }
+
+        private int number() {
+            final int start = position;
+            while (position < regex.length() && Character.isDigit(regex.charAt(position))) {
+                position++;
+            }
+            if (start == position || position - start > 6) {
+                throw error("Illegal repetition");
+            }
+            return Integer.parseInt(regex.substring(start, position));
+        }
+
+        private Term atom() {
+            final char c = regex.charAt(position++);
+            switch (c) {
+                case '(':
+                    if (regex.startsWith("?:", position)) {
+                        position += 2;
+                    } else if (at('?')) {
+                        throw error("Unsupported group construct");
+                    }
+                    final Term group = alternation();
+                    if (!at(')')) {
+                        throw error("Unclosed group");
+                    }
+                    position++;
+                    return group;
+                case '[':
+                    return charClass();
+                case '.':
+                    return new CharClass(ANY);
+                case '\\':
+                    final RangeSet escaped = new RangeSet();
+                    final char[] single = escape(escaped);
+                    return single != null ? CharClass.of(single[0]) : new CharClass(escaped.toRanges(false));
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    position--;
+                    throw error("Dangling meta character '" + c + "'");
+                case '^':
+                case '$':
+                    position--;
+                    throw error("Anchors are not supported, patterns always match complete keys");
+                default:
+                    return CharClass.of(c);
+            }
+        }
+
+        private Term charClass() {
+            final RangeSet set = new RangeSet();
+            final boolean negate = at('^');
+            if (negate) {
+                position++;
+            }
+            boolean first = true;
+            while (first || !at(']')) {
+                if (position >= regex.length()) {
+                    throw error("Unclosed character class");
+                }
+                first = false;
+                final char c = regex.charAt(position++);
+                if (c == '\\') {
+                    final char[] single = escape(set);
+                    if (single == null) {
+                        continue;
+                    }
+                    range(set, single[0]);
+                } else {
+                    range(set, c);
+                }
+            }
+            position++;
+            return new CharClass(set.toRanges(negate));
+        }
+
+        // adds a single char or, if it is followed by a dash and another char, a range
+        private void range(RangeSet set, char first) {
+            if (at('-') && position + 1 < regex.length() && regex.charAt(position + 1) != ']') {
+                position++;
+                char last = regex.charAt(position++);
+                if (last == '\\') {
+                    final char[] single = escape(null);
+                    if (single == null) {
+                        throw error("Illegal character range");
+                    }
+                    last = single[0];
+                }
+                if (last < first) {
+                    throw error("Illegal character range");
+                }
+                set.add(first, last);
+            } else {
+                set.add(first, first);
+            }
+        }
+
+        /**
+         * Parses the escape after a backslash
+         *
+         * @param set Receives the chars of an escaped class, null if no class is allowed
+         *
+         * @return The escaped char, or null if the escape was a class
+         */
+        private char[] escape(RangeSet set) {
+            if (position >= regex.length()) {
+                throw error("Unexpected trailing backslash");
+            }
+            final char c = regex.charAt(position++);
+            final char[] ranges;
+            switch (Character.toLowerCase(c)) {
+                case 'd':
+                    ranges = new char[] { '0', '9' };
+                    break;
+                case 'w':
+                    ranges = new char[] { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+                    break;
+                case 's':
+                    ranges = new char[] { '\t', '\r', ' ', ' ' };
+                    break;
+                default:
+                    return new char[] { single(c) };
+            }
+            if (set == null) {
+                return null;
+            }
+            if (Character.isUpperCase(c)) {
+                final RangeSet positive = new RangeSet();
+                positive.addAll(ranges);
+                set.addAll(positive.toRanges(true));
+            } else {
+                set.addAll(ranges);
+            }
+            return null;
+        }
+
+        private char single(char c) {
+            switch (c) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'f':
+                    return '\f';
+                case 'u':
+                    if (position + 4 > regex.length()) {
+                        throw error("Illegal Unicode escape sequence");
+                    }
+                    try {
+                        final char escaped = (char) Integer.parseInt(regex.substring(position, position + 4), 16);
+                        position += 4;
+                        return escaped;
+                    } catch (NumberFormatException e) {
+                        throw error("Illegal Unicode escape sequence");
+                    }
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        position--;
+                        throw error("Unsupported escape sequence");
+                    }
+                    return c;
+            }
+        }
+    }
+}
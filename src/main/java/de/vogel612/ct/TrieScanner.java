@@ -0,0 +1,223 @@
+package de.vogel612.ct;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Finds all occurrences of the words of a Trie in a text in a single pass, an Aho-Corasick automaton.
+ * <p>
+ * <p>Every char of every node's prefix is a state of the automaton, the root is state 0. The chars of a prefix get
+ * consecutive states, so inside a prefix the only transition leads to the next state, while the state of a prefix's
+ * last char continues with the children of its node. Each state has a failure link to the state of the longest
+ * proper suffix of its path that is also a path in the Trie, which is where the scan continues when the next char of
+ * the text has no transition. An output link points to the nearest state on the failure chain that ends a word, so
+ * all words ending at a position of the text are reported without walking states that end none.</p>
+ * <p>
+ * <p>Besides the words themselves, the automaton takes about 24 bytes per char of the Trie's prefixes. It is
+ * immutable, so a scanner can be shared between threads. The empty word is never reported. Created by
+ * {@link CompressedTrie#scanner()}.</p>
+ */
+public final class TrieScanner {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Receives the occurrences of words found by a scan
+     */
+    @FunctionalInterface
+    public interface MatchConsumer {
+
+        /**
+         * Accepts an occurrence of a word
+         *
+         * @param start The position of the word's first char in the text
+         * @param end   The position right after the word's last char in the text
+         * @param word  The word found
+         */
+        void accept(long start, long end, String word);
+    }
+
+    // per state: the char leading into it and the node whose prefix ends with it, or -1
+    private final char[] chars;
+    private final int[] endNode;
+    // per node: the range of its children, the first char and the first state of its prefix
+    private final int[] firstChild;
+    private final char[] firstChars;
+    private final int[] firstState;
+    // per state: the length of its path, its failure and output links and the word it ends, if any
+    private final int[] depths;
+    private final int[] failure;
+    private final int[] output;
+    private final String[] words;
+
+    /**
+     * Compiles the automaton for the words below the given root
+     *
+     * @param root The root of the tree, with an empty prefix
+     */
+    TrieScanner(TrieNode root) {
+        // breadth-first order, which gives the children of every node consecutive numbers
+        final List<TrieNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        int stateCount = 1;
+        for (int i = 0; i < nodes.size(); i++) {
+            stateCount += nodes.get(i).prefix.length();
+            nodes.addAll(nodes.get(i).children);
+        }
+        final int nodeCount = nodes.size();
+        chars = new char[stateCount];
+        endNode = new int[stateCount];
+        firstChild = new int[nodeCount + 1];
+        firstChars = new char[nodeCount];
+        firstState = new int[nodeCount];
+        depths = new int[stateCount];
+        failure = new int[stateCount];
+        output = new int[stateCount];
+        words = new String[stateCount];
+
+        Arrays.fill(endNode, NONE);
+        endNode[ROOT] = 0;
+        int state = 1;
+        int child = 1;
+        for (int i = 0; i < nodeCount; i++) {
+            final TrieNode node = nodes.get(i);
+            firstChild[i] = child;
+            child += node.children.size();
+            if (i == 0) {
+                continue;
+            }
+            firstState[i] = state;
+            firstChars[i] = node.prefix.charAt(0);
+            node.prefix.getChars(0, node.prefix.length(), chars, state);
+            state += node.prefix.length();
+            endNode[state - 1] = i;
+        }
+        firstChild[nodeCount] = child;
+        link(nodes);
+    }
+
+    /**
+     * Computes the depths, words, failure and output links of all states, visiting them in the order of their depth
+     * so that the targets of the links are done first
+     */
+    private void link(List<TrieNode> nodes) {
+        final int[] queue = new int[chars.length];
+        final int[] parents = new int[chars.length];
+        final StringBuilder path = new StringBuilder();
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        output[ROOT] = NONE;
+        while (head < tail) {
+            final int state = queue[head++];
+            final int node = endNode[state];
+            final int from = node < 0 ? state + 1 : firstChild[node];
+            final int to = node < 0 ? state + 2 : firstChild[node + 1];
+            for (int i = from; i < to; i++) {
+                final int next = node < 0 ? i : firstState[i];
+                depths[next] = depths[state] + 1;
+                parents[next] = state;
+                failure[next] = state == ROOT ? ROOT : step(failure[state], chars[next]);
+                output[next] = words[failure[next]] != null ? failure[next] : output[failure[next]];
+                if (endNode[next] >= 0 && nodes.get(endNode[next]).isCompleteWord) {
+                    path.setLength(0);
+                    for (int s = next; s != ROOT; s = parents[s]) {
+                        path.append(chars[s]);
+                    }
+                    words[next] = path.reverse().toString();
+                }
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * Follows the transition for the given char, or -1 if there is none
+     */
+    private int transition(int state, char c) {
+        final int node = endNode[state];
+        if (node < 0) {
+            return chars[state + 1] == c ? state + 1 : NONE;
+        }
+        int low = firstChild[node];
+        int high = firstChild[node + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char key = firstChars[middle];
+            if (key < c) {
+                low = middle + 1;
+            } else if (key > c) {
+                high = middle - 1;
+            } else {
+                return firstState[middle];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds the state for the given char, following failure links until a state has a transition for it
+     */
+    private int step(int state, char c) {
+        while (true) {
+            final int next = transition(state, c);
+            if (next != NONE) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failure[state];
+        }
+    }
+
+    private void report(int state, long end, MatchConsumer consumer) {
+        for (int s = words[state] != null ? state : output[state]; s != NONE; s = output[s]) {
+            consumer.accept(end - depths[s], end, words[s]);
+        }
+    }
+
+    /**
+     * Reports all occurrences of the words in the given text, including overlapping ones. Occurrences are reported
+     * in the order of their end, longer words first if several end at the same position.
+     *
+     * @param text     The text to scan
+     * @param consumer Receives the occurrences
+     */
+    public void scan(CharSequence text, MatchConsumer consumer) {
+        Objects.requireNonNull(text, "Cannot scan a null text");
+        Objects.requireNonNull(consumer, "Cannot report to a null consumer");
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            report(state, i + 1, consumer);
+        }
+    }
+
+    /**
+     * Reports all occurrences of the words in the text read from the given reader, like {@link #scan(CharSequence,
+     * MatchConsumer)}. The text is read in chunks and never held as a whole. The reader is not closed.
+     *
+     * @param text     The reader supplying the text
+     * @param consumer Receives the occurrences, with their positions counted in chars from the start of the reader
+     *
+     * @throws IOException if reading the text fails
+     */
+    public void scan(Reader text, MatchConsumer consumer) throws IOException {
+        Objects.requireNonNull(text, "Cannot scan a null reader");
+        Objects.requireNonNull(consumer, "Cannot report to a null consumer");
+        final char[] buffer = new char[BUFFER_SIZE];
+        int state = ROOT;
+        long position = 0;
+        int read;
+        while ((read = text.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                state = step(state, buffer[i]);
+                report(state, ++position, consumer);
+            }
+        }
+    }
+}
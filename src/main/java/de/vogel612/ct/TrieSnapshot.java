@@ -0,0 +1,403 @@
+package de.vogel612.ct;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Writes and reads the binary snapshot format of a trie.
+ * <p>
+ * <p>A snapshot stores the nodes as they are, so reading it rebuilds the tree without inserting a single key. All
+ * numbers are big endian. After a header of the magic number and the format version, the nodes follow in post-order,
+ * which places every node after all of its children. Each node is stored as a record of</p>
+ * <ul>
+ * <li>a flags byte: {@link #FLAG_WORD}, {@link #FLAG_WIDE} and the width code of the child offsets in bits 2 and 3,
+ * which stands for 1, 2, 4 or 8 bytes</li>
+ * <li>the length of the prefix as varint, followed by the prefix in one byte per char, or two if it is wide</li>
+ * <li>the word count of the subtree as varint</li>
+ * <li>the number of children as varint</li>
+ * <li>the first chars of the children's prefixes in ascending order, two bytes each</li>
+ * <li>for each child the distance from the start of the child's record back to the start of this record</li>
+ * <li>the score of the word as varint, only if the node is a word. It comes last, so that lookups which do not need
+ * it never have to skip it.</li>
+ * </ul>
+ * <p>
+ * <p>The records are closed by {@link #END_OF_NODES}, followed by a trailer of {@link #TRAILER_SIZE} bytes: the
+ * offset of the root's record as long, the number of words as int and the CRC32 of all preceding bytes as int.
+ * Offsets count from the start of the snapshot, varints use seven bits per byte, least significant bits first.</p>
+ * <p>
+ * <p>Version 1 snapshots carry no scores and are rejected, so that reading one cannot silently reset the scores of
+ * its words.</p>
+ */
+final class TrieSnapshot {
+
+    // "CTRI"
+    static final int MAGIC = 0x43545249;
+    static final byte VERSION = 2;
+    static final int HEADER_SIZE = 5;
+    static final int TRAILER_SIZE = 16;
+
+    static final int FLAG_WORD = 1;
+    // prefix contains chars beyond Latin-1 and is stored in two bytes per char
+    static final int FLAG_WIDE = 2;
+    static final int OFFSET_WIDTH_SHIFT = 2;
+    static final int END_OF_NODES = 0xFF;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private TrieSnapshot() {
+    }
+
+    /**
+     * Returns the number of bytes a child offset takes for the given width code
+     *
+     * @param flags The flags byte of a node record
+     *
+     * @return 1, 2, 4 or 8
+     */
+    static int offsetWidth(int flags) {
+        return 1 << ((flags >> OFFSET_WIDTH_SHIFT) & 3);
+    }
+
+    /**
+     * Writes a snapshot of the tree below the given root.
+     *
+     * @param root The root of the tree, with an empty prefix
+     * @param out  The channel to write to, it is not closed
+     *
+     * @throws IOException if writing fails
+     */
+    static void write(TrieNode root, WritableByteChannel out) throws IOException {
+        Writer writer = new Writer(out);
+        writer.buffer.putInt(MAGIC).put(VERSION);
+        final long rootOffset = writer.writeNode(root);
+        writer.ensure(13);
+        writer.buffer.put((byte) END_OF_NODES).putLong(rootOffset).putInt(root.wordCount);
+        writer.flush();
+        writer.buffer.putInt((int) writer.checksum.getValue());
+        writer.flush();
+    }
+
+    /**
+     * Reads a snapshot into the given root, which must be empty.
+     *
+     * @param in     The channel to read from, it is not closed. Bytes following the snapshot may be consumed.
+     * @param target The empty root to attach the tree to
+     *
+     * @throws StreamCorruptedException if the snapshot is malformed or fails its checksum
+     * @throws EOFException             if the snapshot is truncated
+     * @throws IOException              if reading fails
+     */
+    static void read(ReadableByteChannel in, TrieNode target) throws IOException {
+        Reader reader = new Reader(in);
+        reader.need(HEADER_SIZE);
+        if (reader.buffer.getInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a trie snapshot");
+        }
+        final byte version = reader.buffer.get();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported snapshot version " + version);
+        }
+        // completed subtrees, waiting for their parent
+        final List<TrieNode> pending = new ArrayList<>();
+        long[] pendingOffsets = new long[16];
+        while (true) {
+            final long offset = reader.position();
+            reader.need(1);
+            final int flags = reader.buffer.get() & 0xFF;
+            if (flags == END_OF_NODES) {
+                break;
+            }
+            final TrieNode node = reader.readNode(flags, offset, pending, pendingOffsets);
+            if (pending.size() == pendingOffsets.length) {
+                pendingOffsets = Arrays.copyOf(pendingOffsets, pending.size() * 2);
+            }
+            pendingOffsets[pending.size()] = offset;
+            pending.add(node);
+        }
+        reader.need(12);
+        final long rootOffset = reader.buffer.getLong();
+        final int size = reader.buffer.getInt();
+        final int expected = (int) reader.checksum();
+        reader.need(4);
+        if (reader.buffer.getInt() != expected) {
+            throw new StreamCorruptedException("Snapshot checksum mismatch");
+        }
+        if (pending.size() != 1 || pendingOffsets[0] != rootOffset) {
+            throw new StreamCorruptedException("Snapshot does not end with its root");
+        }
+        final TrieNode root = pending.get(0);
+        if (!root.prefix.isEmpty() || root.wordCount != size) {
+            throw new StreamCorruptedException("Snapshot root does not match its trailer");
+        }
+        target.isCompleteWord = root.isCompleteWord;
+        target.children.addAll(root.children);
+        target.wordCount = root.wordCount;
+        target.score = root.score;
+        target.maxScore = root.maxScore;
+    }
+
+    private static final class Writer {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final CRC32 checksum = new CRC32();
+        private final WritableByteChannel out;
+        // bytes written to the channel so far
+        private long flushed;
+
+        Writer(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.array(), 0, buffer.limit());
+            flushed += buffer.limit();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void putVarint(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void putVarlong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        long writeNode(TrieNode node) throws IOException {
+            final int count = node.children.size();
+            final long[] childOffsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                childOffsets[i] = writeNode(node.children.at(i));
+            }
+            final long offset = position();
+            // the first child was written first and is the farthest away
+            final int widthCode = count == 0 ? 0 : widthCode(offset - childOffsets[0]);
+            final boolean wide = isWide(node.prefix);
+            ensure(1);
+            buffer.put((byte) ((node.isCompleteWord ? FLAG_WORD : 0) | (wide ? FLAG_WIDE : 0)
+              | widthCode << OFFSET_WIDTH_SHIFT));
+            putVarint(node.prefix.length());
+            for (int i = 0; i < node.prefix.length(); i++) {
+                ensure(2);
+                if (wide) {
+                    buffer.putChar(node.prefix.charAt(i));
+                } else {
+                    buffer.put((byte) node.prefix.charAt(i));
+                }
+            }
+            putVarint(node.wordCount);
+            putVarint(count);
+            for (int i = 0; i < count; i++) {
+                ensure(2);
+                buffer.putChar(node.children.at(i).prefix.charAt(0));
+            }
+            for (int i = 0; i < count; i++) {
+                ensure(8);
+                final long delta = offset - childOffsets[i];
+                switch (widthCode) {
+                    case 0:
+                        buffer.put((byte) delta);
+                        break;
+                    case 1:
+                        buffer.putShort((short) delta);
+                        break;
+                    case 2:
+                        buffer.putInt((int) delta);
+                        break;
+                    default:
+                        buffer.putLong(delta);
+                }
+            }
+            if (node.isCompleteWord) {
+                putVarlong(node.score);
+            }
+            return offset;
+        }
+
+        private static int widthCode(long delta) {
+            if (delta < 1L << 8) {
+                return 0;
+            }
+            if (delta < 1L << 16) {
+                return 1;
+            }
+            return delta < 1L << 32 ? 2 : 3;
+        }
+
+        private static boolean isWide(String prefix) {
+            for (int i = 0; i < prefix.length(); i++) {
+                if (prefix.charAt(i) > 0xFF) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Reader {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 checksum = new CRC32();
+        private final ReadableByteChannel in;
+        // bytes compacted out of the buffer so far
+        private long discarded;
+        // consumed bytes before this position are part of the checksum
+        private int checked;
+
+        Reader(ReadableByteChannel in) {
+            this.in = in;
+            buffer.limit(0);
+        }
+
+        long position() {
+            return discarded + buffer.position();
+        }
+
+        void need(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            checksum.update(buffer.array(), checked, buffer.position() - checked);
+            discarded += buffer.position();
+            checked = 0;
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (in.read(buffer) < 0) {
+                    throw new EOFException("Truncated trie snapshot");
+                }
+            }
+            buffer.flip();
+        }
+
+        long checksum() {
+            checksum.update(buffer.array(), checked, buffer.position() - checked);
+            checked = buffer.position();
+            return checksum.getValue();
+        }
+
+        int getVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                need(1);
+                final byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Malformed varint in trie snapshot");
+        }
+
+        long getVarlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                need(1);
+                final byte b = buffer.get();
+                value |= (b & 0x7FL) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Malformed varint in trie snapshot");
+        }
+
+        TrieNode readNode(int flags, long offset, List<TrieNode> pending, long[] pendingOffsets) throws IOException {
+            final boolean wide = (flags & FLAG_WIDE) != 0;
+            final int prefixLength = getVarint();
+            // the length is not checked yet, so the prefix only grows with the chars actually read
+            final StringBuilder prefix = new StringBuilder(Math.min(prefixLength, BUFFER_SIZE));
+            final int charWidth = wide ? 2 : 1;
+            for (int i = 0; i < prefixLength; i++) {
+                need(charWidth);
+                prefix.append(wide ? buffer.getChar() : (char) (buffer.get() & 0xFF));
+            }
+            final int wordCount = getVarint();
+            final int count = getVarint();
+            if (count > pending.size()) {
+                throw new StreamCorruptedException("Node at " + offset + " refers to missing children");
+            }
+            final List<TrieNode> children = pending.subList(pending.size() - count, pending.size());
+            char previous = 0;
+            for (int i = 0; i < count; i++) {
+                need(2);
+                final char first = buffer.getChar();
+                final String childPrefix = children.get(i).prefix;
+                if (childPrefix.isEmpty() || childPrefix.charAt(0) != first || (i > 0 && first <= previous)) {
+                    throw new StreamCorruptedException("Children of node at " + offset + " are not indexed");
+                }
+                previous = first;
+            }
+            final int width = offsetWidth(flags);
+            final int base = pending.size() - count;
+            for (int i = 0; i < count; i++) {
+                need(width);
+                final long delta;
+                switch (width) {
+                    case 1:
+                        delta = buffer.get() & 0xFFL;
+                        break;
+                    case 2:
+                        delta = buffer.getShort() & 0xFFFFL;
+                        break;
+                    case 4:
+                        delta = buffer.getInt() & 0xFFFFFFFFL;
+                        break;
+                    default:
+                        delta = buffer.getLong();
+                }
+                if (offset - delta != pendingOffsets[base + i]) {
+                    throw new StreamCorruptedException("Child offsets of node at " + offset + " do not match");
+                }
+            }
+            final TrieNode node = new TrieNode(prefix.toString(), (flags & FLAG_WORD) != 0, children);
+            if (node.wordCount != wordCount) {
+                throw new StreamCorruptedException("Word count of node at " + offset + " does not match");
+            }
+            if (node.isCompleteWord) {
+                node.score = getVarlong();
+                node.maxScore = node.score;
+            }
+            // the children are complete, so the maximum is rebuilt bottom-up along with the tree
+            for (TrieNode child : children) {
+                node.maxScore = Math.max(node.maxScore, child.maxScore);
+            }
+            children.clear();
+            return node;
+        }
+    }
+}
@@ -17,17 +17,26 @@ public class StringHelper {
      * @return The longest common prefix, or ""
      */
     public static String longestCommonPrefix(String one, String two) {
-        if (one.equals(two)) { return one; }
-        if (one.equals("") || two.equals("")) {
-            return "";
-        }
+        return one.substring(0, commonPrefixLength(one, 0, two, 0));
+    }
 
-        String currentPrefix = "";
-        int size = 0;
-        while (one.startsWith(currentPrefix) && two.startsWith(currentPrefix)) {
-            size++;
-            currentPrefix = one.substring(0, size);
+    /**
+     * Returns the length of the longest common prefix of two char sequences, each starting at the given offset.
+     * Does not allocate.
+     *
+     * @param one       The one sequence
+     * @param oneOffset The position in <tt>one</tt> to start comparing at
+     * @param two       The other sequence
+     * @param twoOffset The position in <tt>two</tt> to start comparing at
+     *
+     * @return The number of chars both sequences share from their offsets on, or 0
+     */
+    public static int commonPrefixLength(CharSequence one, int oneOffset, CharSequence two, int twoOffset) {
+        final int limit = Math.min(one.length() - oneOffset, two.length() - twoOffset);
+        int length = 0;
+        while (length < limit && one.charAt(oneOffset + length) == two.charAt(twoOffset + length)) {
+            length++;
         }
-        return one.substring(0, size - 1);
+        return length;
     }
 }
@@ -0,0 +1,171 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class ByteCompressedTrieTests {
+
+    private final List<String> words = Arrays.asList("", "box", "boxer", "boxes", "boxing", "test", "tester",
+      "twerk", "twitter", "\u00e4rger", "\u20acuro", "\u20ac");
+
+    private ByteCompressedTrie cut;
+
+    @Before
+    public void setup() {
+        cut = new ByteCompressedTrie(words);
+    }
+
+    private static byte[] utf8(String word) {
+        return word.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void add_makesWordsContained() {
+        assertEquals(words.size(), cut.size());
+        for (String word : words) {
+            assertTrue(word, cut.contains(word));
+            assertTrue(word, cut.contains(utf8(word)));
+        }
+        for (String missing : Arrays.asList("bo", "boxe", "boxers", "tw", "twitters", "\u00e4", "\u20acu")) {
+            assertFalse(missing, cut.contains(missing));
+        }
+    }
+
+    @Test
+    public void contains_looksUpRangesOfArrays() {
+        byte[] line = utf8("GET /boxer HTTP/1.1");
+
+        assertTrue(cut.contains(line, 5, 5));
+        assertTrue(cut.contains(line, 5, 3));
+        assertFalse(cut.contains(line, 5, 4));
+        assertTrue(cut.contains(line, 5, 0));
+    }
+
+    @Test
+    public void contains_looksUpRangesOfBuffers() {
+        byte[] line = utf8("GET /\u20acuro HTTP/1.1");
+        ByteBuffer direct = ByteBuffer.allocateDirect(line.length);
+        direct.put(line);
+
+        for (ByteBuffer buffer : Arrays.asList(ByteBuffer.wrap(line), direct)) {
+            assertTrue(cut.contains(buffer, 5, 6));
+            assertTrue(cut.contains(buffer, 5, 3));
+            assertFalse(cut.contains(buffer, 5, 5));
+            assertFalse(cut.contains(buffer, 4, 7));
+        }
+        assertEquals(line.length, direct.position());
+    }
+
+    @Test
+    public void contains_looksUpSlicesOfBuffers() {
+        ByteBuffer slice = ByteBuffer.wrap(utf8("xxboxesxx"), 2, 5).slice();
+
+        assertTrue(cut.contains(slice, 0, 5));
+        assertTrue(cut.contains(slice, 0, 3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void contains_rejectsRangesOutOfBounds() {
+        cut.contains(utf8("box"), 1, 3);
+    }
+
+    @Test
+    public void remove_compactsNodes() {
+        assertTrue(cut.remove("boxer"));
+        assertTrue(cut.remove("boxes"));
+        assertFalse(cut.remove("boxes"));
+        assertTrue(cut.remove(utf8("box")));
+
+        assertTrue(cut.contains("boxing"));
+        assertFalse(cut.contains("box"));
+        assertEquals(words.size() - 3, cut.size());
+        assertTrue(cut.add("boxes"));
+        assertTrue(cut.contains("boxes"));
+    }
+
+    @Test
+    public void iterator_followsEncodedOrder() {
+        List<String> expected = new ArrayList<>(words);
+        expected.sort(Comparator.comparing(word -> new String(utf8(word), StandardCharsets.ISO_8859_1)));
+
+        assertEquals(expected, new ArrayList<>(cut));
+        assertEquals(new HashSet<>(words), cut);
+    }
+
+    @Test
+    public void retainAll_andClear_removeWords() {
+        assertTrue(cut.retainAll(Arrays.asList("box", "test", "nope")));
+        assertEquals(new HashSet<>(Arrays.asList("box", "test")), cut);
+
+        cut.clear();
+        assertTrue(cut.isEmpty());
+        assertFalse(cut.contains(""));
+    }
+
+    @Test
+    public void add_rejectsUnpairedSurrogates() {
+        for (String word : Arrays.asList("x\uD800", "x\uDC00", "\uDC00\uD800", "\uD800x")) {
+            try {
+                cut.add(word);
+                fail("Accepted " + word);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+        assertEquals(words.size(), cut.size());
+        assertFalse(cut.contains("x\uDC00"));
+        assertFalse(cut.remove("x\uDC00"));
+        assertTrue(cut.add("x?"));
+        assertTrue(cut.add("x\uD83D\uDE00"));
+        assertTrue(cut.contains("x\uD83D\uDE00"));
+    }
+
+    @Test
+    public void add_rejectsInvalidUtf8() {
+        // a lone continuation byte, a truncated sequence, an overlong encoding and an encoded surrogate
+        byte[][] keys = { { 'x', (byte) 0x80 }, { 'x', (byte) 0xE2, (byte) 0x82 }, { (byte) 0xC0, (byte) 0xAF },
+          { (byte) 0xED, (byte) 0xA0, (byte) 0x80 } };
+        for (byte[] key : keys) {
+            try {
+                cut.add(key);
+                fail("Accepted " + Arrays.toString(key));
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+        assertEquals(words.size(), cut.size());
+        assertTrue(cut.add(utf8("x\u20ac")));
+        assertTrue(cut.contains("x\u20ac"));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void iterator_failsFast() {
+        Iterator<String> iterator = cut.iterator();
+        iterator.next();
+        cut.add("boxed");
+        iterator.next();
+    }
+
+    @Test
+    public void operations_behaveLikeCompressedTrie() {
+        Random random = new Random(612);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            String word = Integer.toString(random.nextInt(1 << 16), 4);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(word), cut.remove(word));
+            } else {
+                assertEquals(expected.add(word), cut.add(word));
+            }
+        }
+        cut.removeAll(words);
+        assertEquals(expected, cut);
+        assertEquals(new ArrayList<>(new CompressedTrie(expected)), new ArrayList<>(cut));
+    }
+}
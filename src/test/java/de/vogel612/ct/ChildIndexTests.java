@@ -0,0 +1,136 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.*;
+
+public class ChildIndexTests {
+
+    @Test
+    public void get_findsChildByFirstChar() {
+        ChildIndex index = new ChildIndex();
+        TrieNode box = new TrieNode("box");
+        index.put(box);
+        index.put(new TrieNode("test"));
+        assertSame(box, index.get('b'));
+        assertNull(index.get('x'));
+    }
+
+    @Test
+    public void put_replacesChildWithSameFirstChar() {
+        ChildIndex index = new ChildIndex();
+        TrieNode old = new TrieNode("boxes");
+        index.put(old);
+        assertSame(old, index.put(new TrieNode("box")));
+        assertEquals(1, index.size());
+        assertEquals("box", index.get('b').prefix);
+    }
+
+    @Test
+    public void iteration_isOrderedByFirstChar() {
+        ChildIndex index = new ChildIndex();
+        for (String prefix : Arrays.asList("zed", "alpha", "mid", "beta", "omega")) {
+            index.put(new TrieNode(prefix));
+        }
+        List<String> prefixes = new ArrayList<>();
+        for (TrieNode node : index) {
+            prefixes.add(node.prefix);
+        }
+        assertEquals(Arrays.asList("alpha", "beta", "mid", "omega", "zed"), prefixes);
+    }
+
+    @Test
+    public void remove_keepsRemainingChildrenIndexed() {
+        ChildIndex index = new ChildIndex();
+        for (String prefix : Arrays.asList("a", "b", "c", "d")) {
+            index.put(new TrieNode(prefix));
+        }
+        assertNotNull(index.remove('b'));
+        assertNull(index.remove('b'));
+        Iterator<TrieNode> it = index.iterator();
+        it.next();
+        it.next();
+        it.remove();
+        assertEquals(2, index.size());
+        assertNotNull(index.get('a'));
+        assertNull(index.get('c'));
+        assertNotNull(index.get('d'));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_rejectsEmptyPrefix() {
+        new ChildIndex().put(new TrieNode(""));
+    }
+
+    @Test
+    public void get_switchesToDirectTableForLargeFanOut() {
+        ChildIndex index = new ChildIndex();
+        List<Character> chars = new ArrayList<>();
+        for (char c = 'A'; c <= 'z'; c++) {
+            chars.add(c);
+        }
+        chars.add('\u20ac');
+        Collections.shuffle(chars, new Random(612));
+        for (char c : chars) {
+            index.put(new TrieNode(c + "x"));
+            assertEquals(index.size() >= ChildIndex.DIRECT_MIN, index.isDirect());
+        }
+        for (char c : chars) {
+            assertEquals(c + "x", index.get(c).prefix);
+        }
+        assertNull(index.get('!'));
+        assertNull(index.get('\u20ad'));
+        char previous = 0;
+        for (int i = 0; i < index.size(); i++) {
+            assertTrue(index.at(i).prefix.charAt(0) > previous);
+            previous = index.at(i).prefix.charAt(0);
+        }
+    }
+
+    @Test
+    public void remove_keepsDirectTableConsistent() {
+        ChildIndex index = new ChildIndex();
+        for (char c = 'a'; c <= 'z'; c++) {
+            index.put(new TrieNode(String.valueOf(c)));
+        }
+        for (char c = 'a'; c <= 'z'; c += 2) {
+            assertNotNull(index.remove(c));
+        }
+        assertTrue(index.isDirect());
+        for (char c = 'a'; c <= 'z'; c++) {
+            assertEquals(String.valueOf(c), (c - 'a') % 2 == 1, index.get(c) != null);
+        }
+        for (char c = 'b'; c <= 'p'; c += 2) {
+            index.remove(c);
+        }
+        assertFalse(index.isDirect());
+        assertEquals(Arrays.asList("r", "t", "v", "x", "z"), prefixes(index));
+        assertSame(index.at(2), index.get('v'));
+    }
+
+    @Test
+    public void iteratorRemove_shrinksIndex() {
+        ChildIndex index = new ChildIndex();
+        for (char c = 'a'; c <= 'z'; c++) {
+            index.put(new TrieNode(String.valueOf(c)));
+        }
+        for (Iterator<TrieNode> it = index.iterator(); it.hasNext(); ) {
+            if (it.next().prefix.charAt(0) != 'q') {
+                it.remove();
+            }
+        }
+        assertEquals(Collections.singletonList("q"), prefixes(index));
+        assertNotNull(index.get('q'));
+        assertFalse(index.isDirect());
+    }
+
+    private static List<String> prefixes(ChildIndex index) {
+        List<String> result = new ArrayList<>();
+        for (TrieNode node : index) {
+            result.add(node.prefix);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+public class CompressedDawgTests {
+
+    private final List<String> words = Arrays.asList("", "box", "boxer", "boxes", "boxing", "fox", "foxer", "foxes",
+      "foxing", "test", "tester", "testing", "twerk", "twitter");
+
+    private CompressedTrie trie;
+    private CompressedDawg dawg;
+
+    @Before
+    public void setup() {
+        trie = new CompressedTrie(words);
+        dawg = trie.minimize();
+    }
+
+    @Test
+    public void lookups_answerLikeTheTrie() {
+        CompressedTrie source = new CompressedTrie(TrieFixtures.WORDS);
+        CompressedDawg minimized = source.minimize();
+
+        TrieFixtures.assertAnswersLike(source, minimized.size(), minimized::contains, minimized::matches,
+          minimized::countPrefix);
+    }
+
+    @Test
+    public void matches_crossesMergedStates() {
+        for (String prefix : Arrays.asList("", "box", "boxe", "fox", "foxi", "x")) {
+            assertEquals(prefix, trie.matches(prefix), dawg.matches(prefix));
+            assertEquals(prefix, trie.countPrefix(prefix), dawg.countPrefix(prefix));
+        }
+        assertEquals(Arrays.asList("fox", "foxer"), dawg.matches("fo", 2));
+    }
+
+    @Test
+    public void iterator_isAscending() {
+        assertEquals(new ArrayList<>(trie), new ArrayList<>(dawg));
+        assertEquals(new HashSet<>(words), dawg);
+    }
+
+    @Test
+    public void minimize_mergesIdenticalSubtrees() {
+        // "box" and "fox" share their subtree and all ten leaves become a single state
+        assertEquals(18, dawg.nodeCount());
+        assertEquals(7, dawg.stateCount());
+    }
+
+    @Test
+    public void minimize_handlesEmptyTrie() {
+        CompressedDawg empty = new CompressedTrie().minimize();
+
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.contains(""));
+        assertEquals(1, empty.stateCount());
+    }
+
+    @Test
+    public void minimize_shrinksLargeTrie() {
+        String[] stems = { "walk", "talk", "jump", "play", "work", "look", "call", "kick", "pick", "lick" };
+        String[] endings = { "", "s", "ed", "ing", "er", "ers" };
+        CompressedTrie inflected = new CompressedTrie();
+        Random random = new Random(612);
+        for (int i = 0; i < 2000; i++) {
+            String stem = Integer.toString(random.nextInt(100000), 36) + stems[random.nextInt(stems.length)];
+            for (String ending : endings) {
+                inflected.add(stem + ending);
+            }
+        }
+        CompressedDawg minimized = inflected.minimize();
+
+        assertEquals(new ArrayList<>(inflected), new ArrayList<>(minimized));
+        assertTrue(minimized.stateCount() * 4 < minimized.nodeCount());
+    }
+}
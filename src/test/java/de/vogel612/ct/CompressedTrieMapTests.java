@@ -0,0 +1,192 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+public class CompressedTrieMapTests {
+
+    private CompressedTrieMap<Integer> cut;
+    private TreeMap<String, Integer> expected;
+
+    @Before
+    public void setup() {
+        cut = new CompressedTrieMap<>();
+        expected = new TreeMap<>();
+        List<String> keys = Arrays.asList("", "b", "box", "boxer", "boxes", "boxing", "test", "tester", "testing",
+          "twerk", "twitter");
+        for (int i = 0; i < keys.size(); i++) {
+            cut.put(keys.get(i), i);
+            expected.put(keys.get(i), i);
+        }
+    }
+
+    @Test
+    public void put_makesValueGettable() {
+        assertEquals(expected.size(), cut.size());
+        assertEquals(Integer.valueOf(3), cut.get("boxer"));
+        assertEquals(Integer.valueOf(3), cut.put("boxer", 42));
+        assertEquals(Integer.valueOf(42), cut.get("boxer"));
+        assertNull(cut.get("boxe"));
+        assertNull(cut.get(7));
+        assertNull(cut.put("boxe", null));
+        assertTrue(cut.containsKey("boxe"));
+        assertEquals(expected.size() + 1, cut.size());
+    }
+
+    @Test
+    public void remove_returnsValueAndPrunes() {
+        assertEquals(Integer.valueOf(5), cut.remove("boxing"));
+        assertNull(cut.remove("boxing"));
+        assertFalse(cut.containsKey("boxing"));
+        assertEquals(expected.size() - 1, cut.size());
+        assertEquals(Integer.valueOf(4), cut.get("boxes"));
+    }
+
+    @Test
+    public void iteration_isSorted() {
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(cut.entrySet()));
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(cut.keySet()));
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(cut.values()));
+        assertEquals(expected, cut);
+        assertEquals(expected.hashCode(), cut.hashCode());
+    }
+
+    @Test
+    public void entrySetValue_writesThrough() {
+        for (Map.Entry<String, Integer> entry : cut.entrySet()) {
+            entry.setValue(entry.getKey().length());
+        }
+        assertEquals(Integer.valueOf(6), cut.get("boxing"));
+    }
+
+    @Test
+    public void navigation_matchesTreeMap() {
+        List<String> probes = new ArrayList<>(expected.keySet());
+        probes.addAll(Arrays.asList("a", "bo", "boxe", "boxf", "c", "tes", "testz", "tw", "zzz"));
+        for (String probe : probes) {
+            assertEquals(probe, expected.lowerEntry(probe), cut.lowerEntry(probe));
+            assertEquals(probe, expected.floorEntry(probe), cut.floorEntry(probe));
+            assertEquals(probe, expected.ceilingEntry(probe), cut.ceilingEntry(probe));
+            assertEquals(probe, expected.higherEntry(probe), cut.higherEntry(probe));
+            assertEquals(probe, expected.higherKey(probe), cut.higherKey(probe));
+        }
+        assertEquals(expected.firstEntry(), cut.firstEntry());
+        assertEquals(expected.lastKey(), cut.lastKey());
+    }
+
+    @Test
+    public void rangeViews_matchTreeMap() {
+        List<String> bounds = Arrays.asList("", "a", "b", "box", "boxes", "c", "test", "testing", "tw", "zzz");
+        for (String from : bounds) {
+            for (String to : bounds) {
+                if (from.compareTo(to) > 0) {
+                    continue;
+                }
+                for (boolean fromInclusive : new boolean[]{ true, false }) {
+                    for (boolean toInclusive : new boolean[]{ true, false }) {
+                        NavigableMap<String, Integer> expectedView = expected.subMap(from, fromInclusive, to,
+                          toInclusive);
+                        NavigableMap<String, Integer> actualView = cut.subMap(from, fromInclusive, to, toInclusive);
+                        String message = from + fromInclusive + to + toInclusive;
+                        assertEquals(message, expectedView.size(), actualView.size());
+                        assertEquals(message, new ArrayList<>(expectedView.keySet()),
+                          new ArrayList<>(actualView.keySet()));
+                        assertEquals(message, new ArrayList<>(expectedView.descendingKeySet()),
+                          new ArrayList<>(actualView.descendingKeySet()));
+                        assertEquals(message, expectedView.firstEntry(), actualView.firstEntry());
+                        assertEquals(message, expectedView.lastEntry(), actualView.lastEntry());
+                        assertEquals(message, expectedView.ceilingKey("boxes"), actualView.ceilingKey("boxes"));
+                        assertEquals(message, expectedView.lowerKey("tester"), actualView.lowerKey("tester"));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void descendingMap_reversesNavigation() {
+        NavigableMap<String, Integer> expectedView = expected.descendingMap().headMap("boxer", true);
+        NavigableMap<String, Integer> actualView = cut.descendingMap().headMap("boxer", true);
+        assertEquals(new ArrayList<>(expectedView.entrySet()), new ArrayList<>(actualView.entrySet()));
+        assertEquals(expectedView.ceilingKey("test"), actualView.ceilingKey("test"));
+        assertEquals(expectedView.higherKey("test"), actualView.higherKey("test"));
+        assertEquals(expectedView.size(), actualView.size());
+    }
+
+    @Test
+    public void prefixMap_isBackedByMap() {
+        NavigableMap<String, Integer> boxes = cut.prefixMap("box");
+        assertEquals(Arrays.asList("box", "boxer", "boxes", "boxing"), new ArrayList<>(boxes.keySet()));
+        assertEquals(4, boxes.size());
+
+        boxes.put("boxy", 99);
+        assertEquals(Integer.valueOf(99), cut.get("boxy"));
+        boxes.keySet().remove("boxer");
+        assertFalse(cut.containsKey("boxer"));
+        assertEquals(4, boxes.size());
+
+        try {
+            boxes.put("bix", 1);
+            fail("Expected keys outside the prefix to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        boxes.clear();
+        assertTrue(cut.prefixMap("box").isEmpty());
+        assertTrue(cut.containsKey("b"));
+    }
+
+    @Test
+    public void prefixSuccessor_skipsMaximumChars() {
+        assertEquals("boy", CompressedTrieMap.prefixSuccessor("box"));
+        assertEquals("c", CompressedTrieMap.prefixSuccessor("b\uFFFF"));
+        assertNull(CompressedTrieMap.prefixSuccessor("\uFFFF\uFFFF"));
+    }
+
+    @Test
+    public void pollFirstEntry_andLast_removeEntries() {
+        assertEquals(expected.pollFirstEntry(), cut.pollFirstEntry());
+        assertEquals(expected.pollLastEntry(), cut.pollLastEntry());
+        assertEquals(expected, cut);
+    }
+
+    @Test
+    public void iteratorRemove_onView() {
+        Iterator<String> it = cut.subMap("box", false, "test", true).keySet().iterator();
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        assertEquals(Arrays.asList("", "b", "box", "tester", "testing", "twerk", "twitter"),
+          new ArrayList<>(cut.keySet()));
+    }
+
+    @Test
+    public void randomOperations_matchTreeMap() {
+        Random random = new Random(12);
+        for (int i = 0; i < 20000; i++) {
+            String key = Integer.toString(random.nextInt(3000), 7);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), cut.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), cut.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), cut.size());
+        assertEquals(expected, cut);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(cut.keySet()));
+    }
+
+    @Test
+    public void longestPrefixEntry_findsValueOfLongestKey() {
+        assertEquals(new AbstractMap.SimpleImmutableEntry<>("boxer", 3), cut.longestPrefixEntry("boxers"));
+        assertEquals(new AbstractMap.SimpleImmutableEntry<>("b", 1), cut.longestPrefixEntry("bo"));
+        assertEquals(new AbstractMap.SimpleImmutableEntry<>("", 0), cut.longestPrefixEntry("x"));
+        cut.remove("");
+        assertNull(cut.longestPrefixEntry("x"));
+    }
+}
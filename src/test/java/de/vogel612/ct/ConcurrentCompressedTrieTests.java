@@ -0,0 +1,128 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ConcurrentCompressedTrieTests {
+
+    private ConcurrentCompressedTrie cut;
+
+    @Before
+    public void setup() {
+        cut = new ConcurrentCompressedTrie();
+    }
+
+    @Test
+    public void add_makesWordsContained() {
+        assertTrue(cut.add("boxes"));
+        assertTrue(cut.add("boxing"));
+        assertTrue(cut.add("box"));
+        assertTrue(cut.add(""));
+        assertFalse(cut.add("box"));
+
+        assertTrue(cut.containsAll(Arrays.asList("", "box", "boxes", "boxing")));
+        assertFalse(cut.contains("bo"));
+        assertFalse(cut.contains("boxe"));
+        assertFalse(cut.contains("boxer"));
+        assertEquals(4, cut.size());
+    }
+
+    @Test
+    public void remove_unlinksLeaves() {
+        cut.addAll(Arrays.asList("box", "boxes", "boxing"));
+        assertTrue(cut.remove("boxes"));
+        assertFalse(cut.remove("boxes"));
+        assertFalse(cut.remove("bo"));
+        assertTrue(cut.remove("box"));
+        assertEquals(Collections.singletonList("boxing"), new ArrayList<>(cut));
+
+        assertTrue(cut.add("boxes"));
+        assertEquals(Arrays.asList("boxes", "boxing"), new ArrayList<>(cut));
+    }
+
+    @Test
+    public void iteration_isSortedAndSupportsRemove() {
+        List<String> words = Arrays.asList("twitter", "test", "box", "testing", "tester", "twerk");
+        cut.addAll(words);
+        assertEquals(new ArrayList<>(new TreeSet<>(words)), new ArrayList<>(cut));
+
+        cut.removeIf(word -> word.startsWith("test"));
+        assertEquals(Arrays.asList("box", "twerk", "twitter"), new ArrayList<>(cut));
+        assertEquals(3, cut.size());
+    }
+
+    @Test
+    public void concurrentWriters_keepAllWords() throws Exception {
+        final int threads = 8;
+        final int perThread = 5000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < perThread; i++) {
+                    // overlapping keys with shared prefixes make writers split the same edges
+                    String word = Integer.toString(random.nextInt(20000), 5) + "-" + thread;
+                    cut.add(word);
+                    // words carry the thread's suffix, so nobody else removes them
+                    assertTrue(cut.contains(word));
+                    if (i % 3 == 0) {
+                        cut.remove(word);
+                        assertFalse(cut.contains(word));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        Set<String> expected = new TreeSet<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            for (int i = 0; i < perThread; i++) {
+                String word = Integer.toString(random.nextInt(20000), 5) + "-" + t;
+                expected.add(word);
+                if (i % 3 == 0) {
+                    expected.remove(word);
+                }
+            }
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(cut));
+        assertEquals(expected.size(), cut.size());
+    }
+
+    @Test
+    public void concurrentRemovalOfSiblings_keepsOthers() throws Exception {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            words.add("prefix/" + i);
+        }
+        cut.addAll(words);
+        List<String> shuffled = new ArrayList<>(words);
+        Collections.shuffle(shuffled, new Random(3));
+        List<String> removed = shuffled.subList(0, 1500);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final List<String> part = removed.subList(t * 375, (t + 1) * 375);
+            futures.add(pool.submit(() -> part.forEach(cut::remove)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        Set<String> expected = new TreeSet<>(words);
+        expected.removeAll(removed);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(cut));
+    }
+}
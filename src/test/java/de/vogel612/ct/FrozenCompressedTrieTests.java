@@ -0,0 +1,92 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+public class FrozenCompressedTrieTests {
+
+    private CompressedTrie trie;
+    private FrozenCompressedTrie frozen;
+
+    @Before
+    public void setup() {
+        trie = new CompressedTrie(TrieFixtures.WORDS);
+        frozen = trie.freeze();
+    }
+
+    @Test
+    public void lookups_answerLikeTheTrie() {
+        TrieFixtures.assertAnswersLike(trie, frozen.size(), frozen::contains, frozen::matches, frozen::countPrefix);
+        assertEquals(Arrays.asList("box", "boxer"), frozen.matches("box", 2));
+        assertEquals(Collections.emptyList(), frozen.matches("box", 0));
+    }
+
+    @Test
+    public void iterator_isAscending() {
+        assertEquals(new ArrayList<>(trie), new ArrayList<>(frozen));
+        assertEquals(trie, frozen);
+        assertEquals(frozen, new HashSet<>(TrieFixtures.WORDS));
+    }
+
+    @Test
+    public void freeze_isNotModifiedByTheTrie() {
+        trie.add("tent");
+        trie.remove("box");
+
+        assertFalse(frozen.contains("tent"));
+        assertTrue(frozen.contains("box"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void add_isNotSupported() {
+        frozen.add("tent");
+    }
+
+    @Test
+    public void freeze_handlesEmptyTrie() {
+        FrozenCompressedTrie empty = new CompressedTrie().freeze();
+
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.contains(""));
+        assertFalse(empty.iterator().hasNext());
+    }
+
+    @Test
+    public void freeze_copiesLargeTrie() {
+        Random random = new Random(612);
+        CompressedTrie large = new CompressedTrie();
+        while (large.size() < 20000) {
+            large.add(Integer.toString(random.nextInt(1 << 24), 5));
+        }
+        FrozenCompressedTrie copy = large.freeze();
+
+        assertEquals(new ArrayList<>(large), new ArrayList<>(copy));
+        assertEquals(large.matches("1234"), copy.matches("1234"));
+    }
+
+    @Test
+    public void contains_readsFlagsAcrossBitsetWords() {
+        // the node count passes 64 and 128, moving word and non-word nodes across the ends of the bitset's longs
+        for (int count = 40; count <= 140; count++) {
+            CompressedTrie numbers = new CompressedTrie();
+            for (int i = 0; i < count; i++) {
+                numbers.add(String.format("%03d", i));
+            }
+            FrozenCompressedTrie copy = numbers.freeze();
+
+            assertEquals(count, copy.size());
+            assertEquals(new ArrayList<>(numbers), new ArrayList<>(copy));
+            for (String word : numbers) {
+                assertTrue(word, copy.contains(word));
+            }
+            for (String inner : Arrays.asList("", "0", "00", "05", "09")) {
+                assertFalse(inner, copy.contains(inner));
+            }
+            assertFalse(copy.contains(String.format("%03d", count)));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.*;
+
+public class FuzzySearchTests {
+
+    private static int distance(String one, String two) {
+        int[] previous = new int[two.length() + 1];
+        for (int j = 0; j < previous.length; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= one.length(); i++) {
+            int[] row = new int[previous.length];
+            row[0] = i;
+            for (int j = 1; j < row.length; j++) {
+                int replace = previous[j - 1] + (one.charAt(i - 1) == two.charAt(j - 1) ? 0 : 1);
+                row[j] = Math.min(Math.min(previous[j] + 1, row[j - 1] + 1), replace);
+            }
+            previous = row;
+        }
+        return previous[two.length()];
+    }
+
+    private static List<String> search(TrieNode root, String query, int maxEdits, boolean prefixes) {
+        List<String> result = new ArrayList<>();
+        new FuzzySearch(query, maxEdits, prefixes).collect(root, result);
+        return result;
+    }
+
+    private static TrieNode tree(Collection<String> words) {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        words.forEach(root::addChild);
+        return root;
+    }
+
+    @Test
+    public void collect_findsWordsWithinDistance() {
+        TrieNode root = tree(Arrays.asList("box", "boxer", "boxes", "boxing", "fox", "test", "tester", "text"));
+
+        assertEquals(Arrays.asList("box", "fox"), search(root, "box", 1, false));
+        assertEquals(Arrays.asList("box", "boxer", "boxes"), search(root, "boxre", 2, false));
+        assertEquals(Arrays.asList("test", "text"), search(root, "tezt", 1, false));
+        assertEquals(Collections.singletonList("box"), search(root, "box", 0, false));
+    }
+
+    @Test
+    public void collect_findsWordsWithMatchingPrefix() {
+        TrieNode root = tree(Arrays.asList("box", "boxer", "boxes", "boxing", "fox", "test", "tester", "text"));
+
+        assertEquals(Arrays.asList("test", "tester"), search(root, "tset", 2, true).subList(0, 2));
+        assertEquals(Arrays.asList("box", "boxer", "boxes", "boxing", "fox"), search(root, "bo", 1, true));
+        assertEquals(Arrays.asList("boxer", "boxes"), search(root, "bixe", 1, true));
+    }
+
+    @Test
+    public void collect_matchesShortWordsForEmptyQuery() {
+        TrieNode root = tree(Arrays.asList("", "a", "ab", "abc"));
+
+        assertEquals(Arrays.asList("", "a", "ab"), search(root, "", 2, false));
+        assertEquals(Arrays.asList("", "a", "ab", "abc"), search(root, "", 0, true));
+    }
+
+    @Test
+    public void collect_agreesWithBruteForce() {
+        Random random = new Random(612);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            words.add(Integer.toString(random.nextInt(1 << 14), 4));
+        }
+        TrieNode root = tree(words);
+        SortedSet<String> distinct = new TreeSet<>(words);
+        for (String query : Arrays.asList("1230", "33", "1020301", "")) {
+            for (int edits = 0; edits <= 2; edits++) {
+                List<String> expected = new ArrayList<>();
+                List<String> expectedPrefixes = new ArrayList<>();
+                for (String word : distinct) {
+                    if (distance(word, query) <= edits) {
+                        expected.add(word);
+                    }
+                    for (int length = 0; length <= word.length(); length++) {
+                        if (distance(word.substring(0, length), query) <= edits) {
+                            expectedPrefixes.add(word);
+                            break;
+                        }
+                    }
+                }
+                assertEquals(query + "/" + edits, expected, search(root, query, edits, false));
+                assertEquals(query + "/" + edits, expectedPrefixes, search(root, query, edits, true));
+            }
+        }
+    }
+}
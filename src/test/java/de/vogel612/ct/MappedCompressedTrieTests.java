@@ -0,0 +1,154 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class MappedCompressedTrieTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CompressedTrie trie;
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        trie = new CompressedTrie(TrieFixtures.WORDS);
+        file = write(trie);
+    }
+
+    private Path write(CompressedTrie source) throws IOException {
+        Path path = folder.newFile().toPath();
+        try (OutputStream out = Files.newOutputStream(path)) {
+            source.writeTo(out);
+        }
+        return path;
+    }
+
+    private void assertSameAnswers(MappedCompressedTrie mapped) {
+        TrieFixtures.assertAnswersLike(trie, mapped.size(), mapped::contains, mapped::matches, mapped::countPrefix);
+    }
+
+    @Test
+    public void lookups_answerLikeTheWrittenTrie() throws IOException {
+        assertSameAnswers(MappedCompressedTrie.open(file));
+    }
+
+    @Test
+    public void open_readsRecordsAcrossSegments() throws IOException {
+        assertSameAnswers(MappedCompressedTrie.open(file, 4));
+    }
+
+    @Test
+    public void matches_honorsLimit() throws IOException {
+        MappedCompressedTrie mapped = MappedCompressedTrie.open(file);
+
+        assertEquals(Arrays.asList("box", "boxer"), mapped.matches("box", 2));
+        assertEquals(Collections.emptyList(), mapped.matches("box", 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void matches_rejectsNegativeLimit() throws IOException {
+        MappedCompressedTrie.open(file).matches("box", -1);
+    }
+
+    @Test
+    public void open_mapsEmptyTrie() throws IOException {
+        MappedCompressedTrie mapped = MappedCompressedTrie.open(write(new CompressedTrie()));
+
+        assertTrue(mapped.isEmpty());
+        assertFalse(mapped.contains(""));
+        assertEquals(Collections.emptyList(), mapped.matches(""));
+    }
+
+    @Test
+    public void lookups_answerLikeLargeTrie() throws IOException {
+        Random random = new Random(612);
+        CompressedTrie large = new CompressedTrie();
+        while (large.size() < 20000) {
+            large.add("https://example.com/" + Integer.toString(random.nextInt(1 << 20), 36));
+        }
+        MappedCompressedTrie mapped = MappedCompressedTrie.open(write(large));
+        mapped.verify();
+
+        for (String word : large) {
+            assertTrue(mapped.contains(word));
+        }
+        assertEquals(new ArrayList<>(large), mapped.matches("https://"));
+        assertEquals(large.countPrefix("https://example.com/a"), mapped.countPrefix("https://example.com/a"));
+    }
+
+    @Test
+    public void verify_acceptsIntactFile() throws IOException {
+        MappedCompressedTrie.open(file).verify();
+        MappedCompressedTrie.open(file, 4).verify();
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void verify_detectsCorruption() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[new String(bytes, "ISO-8859-1").indexOf("twerk") + 1] ^= 1;
+        Files.write(file, bytes);
+        MappedCompressedTrie.open(file).verify();
+    }
+
+    @Test(timeout = 10000)
+    public void contains_rejectsChildOffsetsLeadingBack() throws IOException {
+        Path path = write(new CompressedTrie(Arrays.asList("apple", "band")));
+        byte[] bytes = Files.readAllBytes(path);
+        // the root's record ends with the one byte offsets of its two children, right before END_OF_NODES
+        int deltas = bytes.length - TrieSnapshot.TRAILER_SIZE - 3;
+        bytes[deltas] = 0;
+        bytes[deltas + 1] = 0;
+        Files.write(path, bytes);
+        MappedCompressedTrie mapped = MappedCompressedTrie.open(path);
+
+        try {
+            mapped.contains("band");
+            fail("Followed a child offset back to its parent");
+        } catch (UncheckedIOException expected) {
+            assertTrue(expected.getCause() instanceof StreamCorruptedException);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void lookups_failCleanlyOnDamagedRecords() throws IOException {
+        byte[] intact = Files.readAllBytes(file);
+        for (int i = TrieSnapshot.HEADER_SIZE; i < intact.length - TrieSnapshot.TRAILER_SIZE - 1; i++) {
+            for (int flip : new int[] { 0x01, 0x7F, 0x80, 0xFF }) {
+                byte[] bytes = intact.clone();
+                bytes[i] ^= flip;
+                Files.write(file, bytes);
+                MappedCompressedTrie mapped = MappedCompressedTrie.open(file);
+                for (String word : TrieFixtures.WORDS) {
+                    try {
+                        mapped.contains(word);
+                        mapped.countPrefix(word);
+                        mapped.matches(word);
+                    } catch (UncheckedIOException expected) {
+                        // a damaged record may be noticed, but nothing else may go wrong
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void open_rejectsForeignFile() throws IOException {
+        Path other = folder.newFile().toPath();
+        Files.write(other, "definitely not a trie snapshot".getBytes("US-ASCII"));
+        MappedCompressedTrie.open(other);
+    }
+}
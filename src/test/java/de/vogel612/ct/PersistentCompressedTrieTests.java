@@ -0,0 +1,88 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.*;
+
+public class PersistentCompressedTrieTests {
+
+    @Test
+    public void with_leavesPreviousVersionUnchanged() {
+        PersistentCompressedTrie first = PersistentCompressedTrie.empty().with("box").with("boxes");
+        PersistentCompressedTrie second = first.with("boxer");
+
+        assertEquals(Arrays.asList("box", "boxes"), new ArrayList<>(first));
+        assertEquals(Arrays.asList("box", "boxer", "boxes"), new ArrayList<>(second));
+        assertEquals(Arrays.asList("boxer", "boxes"), second.matches("boxe"));
+        assertEquals(2, second.countPrefix("boxe"));
+        assertEquals(1, first.countPrefix("boxe"));
+        assertTrue(PersistentCompressedTrie.empty().isEmpty());
+    }
+
+    @Test
+    public void updates_returnSameVersionWithoutChange() {
+        PersistentCompressedTrie trie = PersistentCompressedTrie.copyOf(Arrays.asList("box", "boxes"));
+
+        assertSame(trie, trie.with("box"));
+        assertSame(trie, trie.without("boxe"));
+        assertSame(trie, trie.without("fox"));
+    }
+
+    @Test
+    public void without_compactsCopiedPath() {
+        PersistentCompressedTrie first = PersistentCompressedTrie.copyOf(Arrays.asList("boxer", "boxes", "fox"));
+        PersistentCompressedTrie second = first.without("boxer");
+
+        assertEquals(Arrays.asList("boxes", "fox"), new ArrayList<>(second));
+        assertEquals("boxes", second.root.children.get('b').prefix);
+        assertEquals("boxe", first.root.children.get('b').prefix);
+        assertEquals(Arrays.asList("boxer", "boxes", "fox"), new ArrayList<>(first));
+    }
+
+    @Test
+    public void updates_shareUntouchedSubtrees() {
+        PersistentCompressedTrie first = PersistentCompressedTrie.copyOf(Arrays.asList("apple", "apply", "box", "fox"));
+        PersistentCompressedTrie second = first.with("boxer").without("fox").with("foxes");
+
+        assertSame(first.root.children.get('a'), second.root.children.get('a'));
+        assertNotSame(first.root.children.get('b'), second.root.children.get('b'));
+        assertNotSame(first.root, second.root);
+    }
+
+    @Test
+    public void versions_matchSortedSets() {
+        Random random = new Random(612);
+        PersistentCompressedTrie trie = PersistentCompressedTrie.empty();
+        TreeSet<String> expected = new TreeSet<>();
+        List<PersistentCompressedTrie> versions = new ArrayList<>();
+        List<List<String>> contents = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String word = Integer.toString(random.nextInt(2000), 5);
+            if (random.nextInt(3) == 0) {
+                trie = trie.without(word);
+                expected.remove(word);
+            } else {
+                trie = trie.with(word);
+                expected.add(word);
+            }
+            if (i % 500 == 0) {
+                versions.add(trie);
+                contents.add(new ArrayList<>(expected));
+            }
+        }
+
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(trie));
+        assertEquals(expected.size(), trie.size());
+        assertEquals(trie, PersistentCompressedTrie.copyOf(new CompressedTrie(expected)));
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(contents.get(i), new ArrayList<>(versions.get(i)));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void add_isNotSupported() {
+        PersistentCompressedTrie.empty().add("box");
+    }
+}
@@ -0,0 +1,54 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.*;
+
+public class TrieBuildTaskTests {
+
+    private static TrieNode build(int threshold, String... words) {
+        Arrays.sort(words);
+        return new TrieBuildTask(words, 0, words.length, 0, threshold).invoke();
+    }
+
+    private static List<String> words(TrieNode root) {
+        List<String> result = new ArrayList<>();
+        TrieCursor cursor = new TrieCursor(root, root.prefix, false);
+        while (cursor.advance()) {
+            result.add(cursor.key());
+        }
+        return result;
+    }
+
+    @Test
+    public void compute_matchesSequentialBuild() {
+        String[] words = { "box", "boxer", "boxes", "boxing", "test", "tester", "testing", "twerk", "twitter", "" };
+        TrieNode forked = build(1, words.clone());
+        TrieNode sequential = build(words.length, words.clone());
+
+        assertEquals(words(sequential), words(forked));
+        assertEquals(words.length, forked.wordCount);
+        assertEquals(4, forked.children.get('b').wordCount);
+        assertEquals("box", forked.children.get('b').prefix);
+    }
+
+    @Test
+    public void compute_mergesCommonPrefixIntoSingleNode() {
+        TrieNode node = build(1, "https://a", "https://b", "https://bc");
+
+        assertEquals("https://", node.prefix);
+        assertFalse(node.isCompleteWord);
+        assertEquals(2, node.children.size());
+        assertEquals(3, node.wordCount);
+    }
+
+    @Test
+    public void compute_countsRepeatedWordsOnce() {
+        TrieNode node = build(1, "box", "box", "boxes", "boxes", "boxes");
+
+        assertEquals(Arrays.asList("box", "boxes"), words(node));
+        assertEquals(2, node.wordCount);
+    }
+}
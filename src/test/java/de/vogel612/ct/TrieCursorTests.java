@@ -0,0 +1,67 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+public class TrieCursorTests {
+
+    private final List<String> words = Arrays.asList("", "b", "box", "boxer", "boxes", "boxing", "test", "tester",
+      "testing", "twerk", "twitter");
+    private final TreeSet<String> expected = new TreeSet<>(words);
+    private TrieNode root;
+
+    @Before
+    public void setup() {
+        root = new TrieNode("", false, Collections.emptyList());
+        List<String> shuffled = new ArrayList<>(words);
+        Collections.shuffle(shuffled, new Random(42));
+        shuffled.forEach(root::addChild);
+    }
+
+    private static List<String> drain(TrieCursor cursor) {
+        List<String> result = new ArrayList<>();
+        while (cursor.advance()) {
+            result.add(cursor.key());
+        }
+        return result;
+    }
+
+    @Test
+    public void advance_walksAscending() {
+        assertEquals(new ArrayList<>(expected), drain(new TrieCursor(root, "", false)));
+    }
+
+    @Test
+    public void advance_walksDescending() {
+        assertEquals(new ArrayList<>(expected.descendingSet()), drain(new TrieCursor(root, "", true)));
+    }
+
+    @Test
+    public void advance_walksSubtreeWithRootKey() {
+        TrieNode box = root.findNode("box", 0);
+        assertEquals(Arrays.asList("box", "boxer", "boxes", "boxing"), drain(new TrieCursor(box, "box", false)));
+    }
+
+    @Test
+    public void seek_matchesTreeSetNavigation() {
+        List<String> probes = new ArrayList<>(words);
+        probes.addAll(Arrays.asList("a", "bo", "boxe", "boxf", "boxa", "c", "tes", "testz", "tw", "tx", "zzz"));
+        for (String probe : probes) {
+            for (boolean inclusive : new boolean[]{ true, false }) {
+                TrieCursor ascending = new TrieCursor(root, "", false);
+                ascending.seek(probe, inclusive);
+                assertEquals(probe + "/" + inclusive, new ArrayList<>(expected.tailSet(probe, inclusive)),
+                  drain(ascending));
+
+                TrieCursor descending = new TrieCursor(root, "", true);
+                descending.seek(probe, inclusive);
+                assertEquals(probe + "/" + inclusive,
+                  new ArrayList<>(expected.headSet(probe, inclusive).descendingSet()), drain(descending));
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * The words and checks shared by the tests of the read-only copies of a {@link CompressedTrie}.
+ */
+final class TrieFixtures {
+
+    static final List<String> WORDS = Collections.unmodifiableList(Arrays.asList("", "b", "box", "boxer", "boxes",
+      "boxing", "test", "tester", "testing", "twerk", "twitter", "\u00e4rger", "\u20acuro"));
+
+    static final List<String> MISSING = Collections.unmodifiableList(Arrays.asList("bo", "boxe", "boxers", "t", "tw",
+      "twitters", "x", "\u20ac"));
+
+    static final List<String> PREFIXES = Collections.unmodifiableList(Arrays.asList("", "b", "bo", "box", "boxe", "te",
+      "tw", "twi", "x", "boxers", "\u20ac"));
+
+    private TrieFixtures() {
+    }
+
+    /**
+     * Checks that a copy of the given trie answers lookups and prefix queries for {@link #WORDS}, {@link #MISSING}
+     * and {@link #PREFIXES} like the trie does.
+     */
+    static void assertAnswersLike(CompressedTrie trie, int size, Predicate<String> contains,
+      Function<String, List<String>> matches, ToIntFunction<String> countPrefix) {
+        assertEquals(trie.size(), size);
+        for (String word : WORDS) {
+            assertTrue(word, contains.test(word));
+        }
+        for (String missing : MISSING) {
+            assertFalse(missing, contains.test(missing));
+        }
+        for (String prefix : PREFIXES) {
+            assertEquals(prefix, trie.matches(prefix), matches.apply(prefix));
+            assertEquals(prefix, trie.countPrefix(prefix), countPrefix.applyAsInt(prefix));
+        }
+    }
+}
@@ -142,21 +142,127 @@ public class TrieNodeTests {
         TrieNode boxNode = root.children.iterator().next();
         TrieNode esNode = boxNode.children.iterator().next();
 
-        Map<TrieNode, String> results = root.findMatchingSubtree("", "b");
-        assertSame(boxNode, results.keySet().iterator().next());
-        assertEquals("box", results.values().iterator().next());
+        Map.Entry<TrieNode, String> results = root.findMatchingSubtree("b");
+        assertSame(boxNode, results.getKey());
+        assertEquals("box", results.getValue());
 
-        results = root.findMatchingSubtree("", "boxe");
-        assertSame(esNode, results.keySet().iterator().next());
-        assertEquals("boxes", results.values().iterator().next());
+        results = root.findMatchingSubtree("boxe");
+        assertSame(esNode, results.getKey());
+        assertEquals("boxes", results.getValue());
+
+        results = root.findMatchingSubtree("box");
+        assertSame(boxNode, results.getKey());
+        assertEquals("box", results.getValue());
     }
 
     @Test
     public void emptySubtreeNode() {
         TrieNode root = new TrieNode("");
 
-        Map<TrieNode, String> results = root.findMatchingSubtree("test", "b");
-        assertTrue(results.keySet().iterator().next() == null);
-        assertEquals("test", results.values().iterator().next());
+        assertNull(root.findMatchingSubtree("b"));
+        root.addChild("box");
+        assertNull(root.findMatchingSubtree("bix"));
+        assertNull(root.findMatchingSubtree("boxes"));
+    }
+
+    @Test
+    public void addChild_reportsExistingWords() {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        assertTrue(root.addChild("boxes"));
+        assertTrue(root.addChild("box"));
+        assertFalse(root.addChild("boxes"));
+        assertFalse(root.addChild("box"));
+        assertTrue(root.addChild(""));
+        assertTrue(root.isCompleteWord);
+    }
+
+    @Test
+    public void findNode_walksKeyByOffset() {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        root.addChild("boxes");
+        root.addChild("boxing");
+
+        TrieNode boxNode = root.children.iterator().next();
+        assertSame(boxNode, root.findNode("box", 0));
+        assertSame(boxNode.findNode("xxboxes", 5), boxNode.children.iterator().next());
+        assertNull(root.findNode("bo", 0));
+        assertNull(root.findNode("boxer", 0));
+    }
+
+    @Test
+    public void removeWord_prunesLeaves() {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        root.addChild("box");
+        root.addChild("boxes");
+
+        assertTrue(root.removeWord("boxes", 0));
+        assertFalse(root.removeWord("boxes", 0));
+        final TrieNode node = root.children.iterator().next();
+        assertEquals("box", node.prefix);
+        assertTrue(node.children.isEmpty());
+
+        assertTrue(root.removeWord("box", 0));
+        assertTrue(root.children.isEmpty());
+    }
+
+    @Test
+    public void removeWord_mergesSingleChildNodes() {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        root.addChild("boxes");
+        root.addChild("boxing");
+        root.addChild("boxer");
+
+        assertTrue(root.removeWord("boxing", 0));
+        assertTrue(root.removeWord("boxer", 0));
+
+        assertEquals(1, root.children.size());
+        final TrieNode leaf = root.children.iterator().next();
+        assertEquals("boxes", leaf.prefix);
+        assertTrue(leaf.isCompleteWord);
+        assertTrue(leaf.children.isEmpty());
+    }
+
+    @Test
+    public void removeWord_ignoresPartialMatches() {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        root.addChild("boxes");
+        root.addChild("boxing");
+
+        assertFalse(root.removeWord("box", 0));
+        assertFalse(root.removeWord("boxe", 0));
+        assertFalse(root.removeWord("boxers", 0));
+        assertEquals(2, root.children.iterator().next().children.size());
+    }
+
+    @Test
+    public void wordCounts_followAddAndRemove() {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        root.addChild("boxes");
+        root.addChild("boxing");
+        root.addChild("box");
+        root.addChild("box");
+        assertEquals(3, root.wordCount);
+        TrieNode box = root.children.iterator().next();
+        assertEquals(3, box.wordCount);
+
+        root.removeWord("boxing", 0);
+        assertEquals(2, root.wordCount);
+        assertEquals(2, box.wordCount);
+        assertEquals(1, box.children.iterator().next().wordCount);
+    }
+
+    @Test
+    public void prefixWords_areFoundAlongTheInput() {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        root.addChild("/api");
+        root.addChild("/api/users");
+        root.addChild("/apiary");
+
+        assertEquals(10, root.longestPrefixLength("/api/users/42"));
+        assertEquals(4, root.longestPrefixLength("/api/user"));
+        assertEquals(-1, root.longestPrefixLength("/ap"));
+        List<Integer> lengths = new ArrayList<>();
+        root.prefixWordLengths(new StringBuilder("/api/users/42"), lengths::add);
+        assertEquals(Arrays.asList(4, 10), lengths);
     }
 }
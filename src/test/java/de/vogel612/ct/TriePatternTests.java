@@ -0,0 +1,139 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class TriePatternTests {
+
+    private static List<String> collect(TriePattern pattern, Collection<String> words) {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        words.forEach(root::addChild);
+        List<String> result = new ArrayList<>();
+        pattern.collect(root, result);
+        return result;
+    }
+
+    @Test
+    public void glob_matchesStarsAndQuestionMarks() {
+        TriePattern pattern = TriePattern.glob("user_*_2026");
+
+        assertTrue(pattern.matches("user_42_2026"));
+        assertTrue(pattern.matches("user__2026"));
+        assertTrue(pattern.matches("user_a_b_2026"));
+        assertFalse(pattern.matches("user_42_2025"));
+        assertFalse(pattern.matches("user_2026"));
+
+        TriePattern single = TriePattern.glob("a?c");
+        assertTrue(single.matches("abc"));
+        assertFalse(single.matches("ac"));
+        assertFalse(single.matches("abbc"));
+    }
+
+    @Test
+    public void glob_escapesMetaChars() {
+        TriePattern pattern = TriePattern.glob("what\\?*");
+
+        assertTrue(pattern.matches("what?"));
+        assertTrue(pattern.matches("what? ever"));
+        assertFalse(pattern.matches("whats"));
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void glob_rejectsTrailingBackslash() {
+        TriePattern.glob("abc\\");
+    }
+
+    @Test
+    public void regex_supportsOperators() {
+        assertTrue(TriePattern.regex("(ab|c)+d?").matches("abcab"));
+        assertTrue(TriePattern.regex("[a-c]{2,3}").matches("cab"));
+        assertFalse(TriePattern.regex("[a-c]{2,3}").matches("cabb"));
+        assertTrue(TriePattern.regex("[^a-c]\\d+").matches("z042"));
+        assertFalse(TriePattern.regex("[^a-c]\\d+").matches("b042"));
+        assertTrue(TriePattern.regex("\\w+\\.txt").matches("file_1.txt"));
+        assertTrue(TriePattern.regex("(?:x|y){0,}\\u0041").matches("xyxA"));
+        assertTrue(TriePattern.regex("").matches(""));
+    }
+
+    @Test
+    public void regex_rejectsUnsupportedConstructs() {
+        for (String regex : Arrays.asList("^abc", "abc$", "*a", "(ab", "ab)", "[ab", "a{3,1}", "(?=a)", "\\k", "\\")) {
+            try {
+                TriePattern.regex(regex);
+                fail("Accepted " + regex);
+            } catch (PatternSyntaxException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void regex_rejectsPatternsExpandingToTooManyStates() {
+        for (String regex : Arrays.asList("a{999999}", "((a{100}){100}){100}", "(a{1000}|b){100,}", "x(a{40000}b){2}y",
+          "(((((a{9}){9}){9}){9}){9}){9}", "(a{40000})*+?*+?*+?*+?*+?")) {
+            try {
+                TriePattern.regex(regex);
+                fail("Accepted " + regex);
+            } catch (PatternSyntaxException expected) {
+                // expected
+            }
+        }
+        assertTrue(TriePattern.regex("(a{100}){100}").matches(String.join("", Collections.nCopies(10000, "a"))));
+    }
+
+    @Test
+    public void collect_findsMatchingWordsInOrder() {
+        List<String> words = Arrays.asList("user_1_2025", "user_1_2026", "user_22_2026", "admin_1_2026", "user",
+          "user_2026");
+
+        assertEquals(Arrays.asList("user_1_2026", "user_22_2026"),
+          collect(TriePattern.glob("user_*_2026"), words));
+        assertEquals(Arrays.asList("admin_1_2026", "user_1_2026", "user_2026", "user_22_2026"),
+          collect(TriePattern.glob("*2026"), words));
+        assertEquals(Collections.singletonList("user"), collect(TriePattern.regex("u.er"), words));
+    }
+
+    @Test
+    public void collect_prunesDeadSubtrees() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            words.add("other/" + i);
+        }
+        words.add("user/1");
+        TriePattern pattern = TriePattern.glob("user/*");
+
+        assertEquals(Collections.singletonList("user/1"), collect(pattern, words));
+        // dead, initial and the states along "user/"
+        assertEquals(8, pattern.stateCount());
+    }
+
+    @Test
+    public void collect_agreesWithJavaRegex() {
+        Random random = new Random(612);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = random.nextInt(8); length > 0; length--) {
+                word.append("abc1_\u00e9".charAt(random.nextInt(6)));
+            }
+            words.add(word.toString());
+        }
+        SortedSet<String> distinct = new TreeSet<>(words);
+        for (String regex : Arrays.asList("a.*", "(ab|ba)*c?", "[ab]+1?_*", "\\w{2,4}", "[^a]*\u00e9", ".?b{2}.*",
+          "\\D+", "(a|b|c)*1(a|b|c)*")) {
+            Pattern expected = Pattern.compile(regex);
+            List<String> matching = new ArrayList<>();
+            for (String word : distinct) {
+                if (expected.matcher(word).matches()) {
+                    matching.add(word);
+                }
+            }
+            assertEquals(regex, matching, collect(TriePattern.regex(regex), words));
+        }
+    }
+}
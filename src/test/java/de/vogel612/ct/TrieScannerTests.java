@@ -0,0 +1,103 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.*;
+
+public class TrieScannerTests {
+
+    private static TrieScanner scanner(String... words) {
+        TrieNode root = new TrieNode("", false, Collections.emptyList());
+        for (String word : words) {
+            root.addChild(word);
+        }
+        return new TrieScanner(root);
+    }
+
+    private static List<String> scan(TrieScanner scanner, CharSequence text) {
+        List<String> matches = new ArrayList<>();
+        scanner.scan(text, (start, end, word) -> matches.add(start + "-" + end + ":" + word));
+        return matches;
+    }
+
+    @Test
+    public void scan_findsOverlappingWords() {
+        TrieScanner scanner = scanner("he", "she", "his", "hers");
+
+        assertEquals(Arrays.asList("1-4:she", "2-4:he", "2-6:hers"), scan(scanner, "ushers"));
+    }
+
+    @Test
+    public void scan_followsFailureLinksIntoCompressedPrefixes() {
+        // "abcd" and "bcx" are single nodes, the scan has to fall back from inside "abcd" into "bcx"
+        TrieScanner scanner = scanner("abcd", "bcx", "c");
+
+        assertEquals(Arrays.asList("2-3:c", "1-4:bcx", "6-7:c", "4-8:abcd"), scan(scanner, "abcxabcd"));
+    }
+
+    @Test
+    public void scan_reportsNothingWithoutWords() {
+        assertTrue(scan(scanner(), "text").isEmpty());
+        assertTrue(scan(scanner(""), "text").isEmpty());
+        assertTrue(scan(scanner("x"), "").isEmpty());
+    }
+
+    @Test
+    public void scan_readerMatchesAcrossChunks() throws IOException {
+        TrieScanner scanner = scanner("needle", "dle");
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 20000) {
+            text.append("haystack needle ");
+        }
+        List<String> expected = scan(scanner, text);
+        List<String> actual = new ArrayList<>();
+        // hands out a few chars at a time to split words between reads
+        Reader reader = new StringReader(text.toString()) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 7));
+            }
+        };
+        scanner.scan(reader, (start, end, word) -> actual.add(start + "-" + end + ":" + word));
+
+        assertEquals(expected, actual);
+        assertEquals(2 * (text.length() / 16), actual.size());
+    }
+
+    @Test
+    public void scan_matchesBruteForce() {
+        Random random = new Random(612);
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            words.add(randomString(random, 1 + random.nextInt(6)));
+        }
+        TrieScanner scanner = scanner(words.toArray(new String[0]));
+        String text = randomString(random, 5000);
+
+        Set<String> expected = new HashSet<>();
+        for (int start = 0; start < text.length(); start++) {
+            for (int end = start + 1; end <= Math.min(text.length(), start + 6); end++) {
+                if (words.contains(text.substring(start, end))) {
+                    expected.add(start + "-" + end + ":" + text.substring(start, end));
+                }
+            }
+        }
+        List<String> actual = scan(scanner, text);
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, new HashSet<>(actual));
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append((char) ('a' + random.nextInt(3)));
+        }
+        return result.toString();
+    }
+}
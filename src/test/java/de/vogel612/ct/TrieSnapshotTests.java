@@ -0,0 +1,165 @@
+package de.vogel612.ct;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.*;
+
+public class TrieSnapshotTests {
+
+    private static byte[] snapshot(CompressedTrie trie) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trie.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static CompressedTrie read(byte[] snapshot) throws IOException {
+        return CompressedTrie.readFrom(new ByteArrayInputStream(snapshot));
+    }
+
+    private static List<String> randomWords(int count) {
+        Random random = new Random(612);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 1 + random.nextInt(12); length > 0; length--) {
+                word.append((char) ('a' + random.nextInt(6)));
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    @Test
+    public void roundTrip_keepsWords() throws IOException {
+        CompressedTrie trie = new CompressedTrie(Arrays.asList("", "box", "boxer", "boxes", "boxing", "test",
+          "\u00e4rger", "\u20ac", "\u20acuro"));
+        CompressedTrie copy = read(snapshot(trie));
+
+        assertEquals(trie, copy);
+        assertEquals(new ArrayList<>(trie), new ArrayList<>(copy));
+        assertEquals(2, copy.countPrefix("boxe"));
+        assertEquals(2, copy.rank("boxer"));
+    }
+
+    @Test
+    public void roundTrip_keepsScores() throws IOException {
+        CompressedTrie trie = new CompressedTrie();
+        trie.add("apply", 9);
+        trie.add("apple", 5);
+        trie.add("ape", 1);
+        trie.add("apex");
+        trie.add("", Long.MAX_VALUE);
+        CompressedTrie copy = read(snapshot(trie));
+
+        assertEquals(9, copy.score("apply"));
+        assertEquals(0, copy.score("apex"));
+        assertEquals(Long.MAX_VALUE, copy.score(""));
+        assertEquals(Arrays.asList("apply", "apple"), copy.topK("ap", 2));
+        assertEquals(Arrays.asList("", "apply"), copy.topK("", 2));
+
+        // the maximum scores of the read nodes keep up with later changes
+        copy.add("apple", 12);
+        copy.remove("apply");
+        assertEquals(Arrays.asList("apple", "ape"), copy.topK("ap", 2));
+    }
+
+    @Test
+    public void roundTrip_keepsLargeTrie() throws IOException {
+        CompressedTrie trie = new CompressedTrie(randomWords(50000));
+        byte[] snapshot = snapshot(trie);
+        CompressedTrie copy = read(snapshot);
+
+        assertTrue(snapshot.length > 64 * 1024);
+        assertEquals(trie.size(), copy.size());
+        assertEquals(new ArrayList<>(trie), new ArrayList<>(copy));
+        assertEquals(trie.countPrefix("abc"), copy.countPrefix("abc"));
+    }
+
+    @Test
+    public void roundTrip_keepsEmptyTrie() throws IOException {
+        CompressedTrie copy = read(snapshot(new CompressedTrie()));
+
+        assertTrue(copy.isEmpty());
+        assertFalse(copy.contains(""));
+    }
+
+    @Test
+    public void roundTrip_worksThroughChannels() throws IOException {
+        CompressedTrie trie = new CompressedTrie(Arrays.asList("twerk", "twitter", "tweet"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trie.writeTo(Channels.newChannel(out));
+
+        CompressedTrie copy = CompressedTrie.readFrom(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(trie, copy);
+    }
+
+    @Test
+    public void read_returnsModifiableTrie() throws IOException {
+        CompressedTrie copy = read(snapshot(new CompressedTrie(Arrays.asList("box", "boxes"))));
+
+        assertTrue(copy.add("boxer"));
+        assertTrue(copy.remove("box"));
+        assertEquals(Arrays.asList("boxer", "boxes"), new ArrayList<>(copy));
+    }
+
+    @Test
+    public void read_consumesSnapshotToItsEnd() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CompressedTrie(Arrays.asList("box", "boxes")).writeTo(out);
+        new CompressedTrie(Arrays.asList("test")).writeTo(out);
+        // a channel that returns single bytes cannot read past the first snapshot
+        InputStream in = new ByteArrayInputStream(out.toByteArray()) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        assertEquals(Arrays.asList("box", "boxes"), new ArrayList<>(CompressedTrie.readFrom(in)));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void read_detectsCorruptionByChecksum() throws IOException {
+        byte[] snapshot = snapshot(new CompressedTrie(Arrays.asList("box", "boxer", "boxes")));
+        // turn the prefix "box" into "bnx", which leaves the structure intact
+        int index = new String(snapshot, "ISO-8859-1").indexOf("box");
+        snapshot[index + 1] ^= 1;
+        read(snapshot);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void read_rejectsForeignData() throws IOException {
+        read("not a trie snapshot".getBytes("US-ASCII"));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void read_rejectsUnknownVersion() throws IOException {
+        byte[] snapshot = snapshot(new CompressedTrie(Arrays.asList("box")));
+        snapshot[4] = 42;
+        read(snapshot);
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void read_rejectsVersionWithoutScores() throws IOException {
+        byte[] snapshot = snapshot(new CompressedTrie(Arrays.asList("box")));
+        snapshot[4] = 1;
+        read(snapshot);
+    }
+
+    @Test(expected = EOFException.class)
+    public void read_rejectsOversizedPrefixLength() throws IOException {
+        // a word node claiming a prefix of 2^31 - 1 chars, with none of them following
+        read(new byte[] { 'C', 'T', 'R', 'I', TrieSnapshot.VERSION, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+          (byte) 0xFF, 0x07 });
+    }
+
+    @Test(expected = EOFException.class)
+    public void read_rejectsTruncatedSnapshot() throws IOException {
+        byte[] snapshot = snapshot(new CompressedTrie(Arrays.asList("box", "boxes")));
+        read(Arrays.copyOf(snapshot, snapshot.length - 1));
+    }
+}
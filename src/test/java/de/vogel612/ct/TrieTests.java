@@ -6,10 +6,14 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.List;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Created by vogel612 on 02.10.15.
@@ -77,6 +81,17 @@ public class TrieTests {
         assertTrue(result);
     }
 
+    @Test
+    public void removePrefixWord_keepsLongerWords() {
+        cut.addAll(Arrays.asList("test", "testing", "tester"));
+        assertTrue(cut.remove("test"));
+        assertFalse(cut.contains("test"));
+        assertTrue(cut.containsAll(Arrays.asList("testing", "tester")));
+        assertTrue(cut.remove("tester"));
+        assertEquals(Arrays.asList("testing"), cut.matches("t"));
+        assertEquals(1, cut.size());
+    }
+
     @Test
     public void removeNonexistingNode_returnsFalse() {
         assertFalse(cut.remove("random"));
@@ -128,6 +143,48 @@ public class TrieTests {
         assertTrue(actual.containsAll(expected));
     }
 
+    @Test
+    public void matches_returnsEachWordOnce() {
+        cut.add("test");
+        cut.add("testing");
+
+        assertEquals(2, cut.matches("tes").size());
+        assertEquals(Arrays.asList("testing"), cut.matches("testi"));
+        assertTrue(cut.matches("tester").isEmpty());
+    }
+
+    @Test
+    public void matchesWithLimit_returnsFirstMatches() {
+        cut.addAll(Arrays.asList("tester", "test", "twitter", "testing", "twerk", "box"));
+
+        assertEquals(Arrays.asList("test", "tester"), cut.matches("t", 2));
+        assertEquals(Arrays.asList("test", "tester", "testing"), cut.matches("tes", 10));
+        assertTrue(cut.matches("t", 0).isEmpty());
+        assertTrue(cut.matches("x", 3).isEmpty());
+    }
+
+    @Test
+    public void matchesAfter_pagesThroughMatches() {
+        cut.addAll(Arrays.asList("tester", "test", "twitter", "testing", "twerk", "box", "u"));
+
+        List<String> pages = new ArrayList<>(cut.matches("t", 2));
+        List<String> page = cut.matchesAfter("t", pages.get(pages.size() - 1), 2);
+        while (!page.isEmpty()) {
+            pages.addAll(page);
+            page = cut.matchesAfter("t", page.get(page.size() - 1), 2);
+        }
+        assertEquals(Arrays.asList("test", "tester", "testing", "twerk", "twitter"), pages);
+
+        cut.remove("testing");
+        assertEquals(Arrays.asList("twerk"), cut.matchesAfter("t", "testing", 1));
+        assertEquals(Arrays.asList("test"), cut.matchesAfter("t", "a", 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void matchesWithLimit_rejectsNegativeLimit() {
+        cut.matches("", -1);
+    }
+
     @Test
     public void testSize() {
         assertEquals(0, cut.size());
@@ -182,4 +239,447 @@ public class TrieTests {
         assertTrue(cut.containsAll(intersection));
         assertEquals(cut.size(), intersection.size());
     }
+
+    @Test
+    public void iterator_walksLazilyInOrder() {
+        cut.addAll(Arrays.asList("testing", "test", "twitter", "twerk", "box"));
+        List<String> iterated = new ArrayList<>();
+        for (String word : cut) {
+            iterated.add(word);
+        }
+        assertEquals(Arrays.asList("box", "test", "testing", "twerk", "twitter"), iterated);
+        assertArrayEquals(iterated.toArray(), cut.toArray());
+        assertArrayEquals(iterated.toArray(new String[0]), cut.toArray(new String[0]));
+    }
+
+    @Test
+    public void iteratorRemove_removesWhileIterating() {
+        cut.addAll(Arrays.asList("test", "tester", "testing", "twerk", "twitter"));
+        Iterator<String> it = cut.iterator();
+        List<String> seen = new ArrayList<>();
+        while (it.hasNext()) {
+            String word = it.next();
+            seen.add(word);
+            if (word.startsWith("test")) {
+                it.remove();
+            }
+        }
+        assertEquals(Arrays.asList("test", "tester", "testing", "twerk", "twitter"), seen);
+        assertEquals(Arrays.asList("twerk", "twitter"), cut.matches(""));
+        assertEquals(2, cut.size());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void iterator_failsOnConcurrentModification() {
+        cut.addAll(Arrays.asList("test", "tester"));
+        Iterator<String> it = cut.iterator();
+        it.next();
+        cut.add("twerk");
+        it.hasNext();
+    }
+
+    @Test
+    public void parallelStream_coversAllWordsInOrder() {
+        List<String> words = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            words.add(Integer.toString(random.nextInt(1_000_000), 36));
+        }
+        cut.addAll(words);
+        List<String> expected = new ArrayList<>(new TreeSet<>(words));
+
+        assertEquals(expected, cut.parallelStream().collect(Collectors.toList()));
+        assertEquals(expected.size(), cut.parallelStream().count());
+    }
+
+    @Test
+    public void spliterator_splitsAtSubtrees() {
+        cut.addAll(Arrays.asList("a", "ab", "b", "c", "cd", "ce"));
+        Spliterator<String> second = cut.spliterator();
+        assertEquals(6, second.getExactSizeIfKnown());
+        Spliterator<String> first = second.trySplit();
+        assertNotNull(first);
+        assertEquals(6, first.getExactSizeIfKnown() + second.getExactSizeIfKnown());
+
+        List<String> words = new ArrayList<>();
+        first.forEachRemaining(words::add);
+        second.forEachRemaining(words::add);
+        assertEquals(Arrays.asList("a", "ab", "b", "c", "cd", "ce"), words);
+    }
+
+    @Test
+    public void countPrefix_usesSubtreeCounts() {
+        cut.addAll(Arrays.asList("test", "tester", "testing", "twerk", "twitter", "box"));
+        assertEquals(6, cut.countPrefix(""));
+        assertEquals(5, cut.countPrefix("t"));
+        assertEquals(3, cut.countPrefix("tes"));
+        assertEquals(1, cut.countPrefix("teste"));
+        assertEquals(0, cut.countPrefix("tx"));
+
+        cut.remove("tester");
+        cut.remove("twerk");
+        assertEquals(3, cut.countPrefix("t"));
+        assertEquals(2, cut.countPrefix("test"));
+    }
+
+    @Test
+    public void rankAndSelect_matchSortedOrder() {
+        List<String> words = Arrays.asList("", "a", "test", "tester", "testing", "twerk", "twitter", "box", "boxes");
+        cut.addAll(words);
+        List<String> sorted = new ArrayList<>(new TreeSet<>(words));
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), cut.select(i));
+            assertEquals(i, cut.rank(sorted.get(i)));
+        }
+        assertEquals(sorted.indexOf("test"), cut.rank("tesa"));
+        assertEquals(sorted.indexOf("tester"), cut.rank("testa"));
+        assertEquals(sorted.indexOf("twerk"), cut.rank("testz"));
+        assertEquals(sorted.indexOf("test"), cut.rank("te"));
+        assertEquals(sorted.size(), cut.rank("zz"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void select_rejectsIndexBeyondSize() {
+        cut.add("test");
+        cut.select(1);
+    }
+
+    @Test
+    public void navigation_resolvesByWalkingTheTree() {
+        cut.addAll(Arrays.asList("box", "boxes", "test", "tester", "twitter"));
+
+        assertEquals("box", cut.first());
+        assertEquals("twitter", cut.last());
+        assertEquals("test", cut.ceiling("tes"));
+        assertEquals("test", cut.ceiling("test"));
+        assertEquals("tester", cut.higher("test"));
+        assertEquals("boxes", cut.floor("boxing"));
+        assertEquals("boxes", cut.lower("test"));
+        assertNull(cut.lower("box"));
+        assertNull(cut.higher("twitter"));
+    }
+
+    @Test
+    public void rangeViews_areBackedByTrie() {
+        cut.addAll(Arrays.asList("box", "boxes", "test", "tester", "twitter"));
+
+        NavigableSet<String> range = cut.subSet("boxes", true, "tester", false);
+        assertEquals(Arrays.asList("boxes", "test"), new ArrayList<>(range));
+        assertEquals(2, range.size());
+        assertEquals(Arrays.asList("test", "tester", "twitter"), new ArrayList<>(cut.tailSet("t")));
+        assertEquals(Arrays.asList("box", "boxes"), new ArrayList<>(cut.headSet("test")));
+        assertEquals(Arrays.asList("twitter", "tester", "test", "boxes", "box"), new ArrayList<>(cut.descendingSet()));
+
+        cut.add("tent");
+        assertEquals(Arrays.asList("boxes", "tent", "test"), new ArrayList<>(range));
+        range.remove("tent");
+        assertFalse(cut.contains("tent"));
+    }
+
+    @Test
+    public void equality_followsSetContract() {
+        List<String> items = Arrays.asList("box", "boxes", "test");
+        cut.addAll(items);
+        assertEquals(new HashSet<>(items), cut);
+        assertEquals(cut, new TreeSet<>(items));
+        assertEquals(new HashSet<>(items).hashCode(), cut.hashCode());
+        assertNotEquals(cut, new HashSet<>(Arrays.asList("box", "boxes")));
+        assertEquals("[box, boxes, test]", cut.toString());
+    }
+
+    @Test
+    public void spliterator_isSorted() {
+        cut.addAll(Arrays.asList("box", "boxes", "test"));
+        Spliterator<String> spliterator = cut.spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+        assertNull(spliterator.getComparator());
+    }
+
+    private static byte[] snapshot(CompressedTrie trie) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trie.writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void builder_buildsSameTreeAsAdding() throws IOException {
+        Random random = new Random(612);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = random.nextInt(8); length > 0; length--) {
+                word.append((char) ('a' + random.nextInt(4)));
+            }
+            words.add(word.toString());
+        }
+        cut.addAll(words);
+        Collections.sort(words);
+
+        CompressedTrie built = CompressedTrie.builder().addAll(words.iterator()).build();
+        assertEquals(cut, built);
+        assertArrayEquals(snapshot(cut), snapshot(built));
+        assertEquals(cut.countPrefix("ab"), built.countPrefix("ab"));
+        assertEquals(cut.rank("bad"), built.rank("bad"));
+    }
+
+    @Test
+    public void builder_splitsNodesOnThePath() throws IOException {
+        List<String> words = Arrays.asList("box", "boxer", "boxes", "boxing", "test", "tester", "testing", "twerk",
+          "twitter");
+        cut.addAll(words);
+
+        CompressedTrie built = CompressedTrie.builder().addAll(words.stream()).build();
+        assertArrayEquals(snapshot(cut), snapshot(built));
+        assertTrue(built.add("tent"));
+        assertTrue(built.remove("box"));
+        assertEquals(2, built.countPrefix("boxe"));
+    }
+
+    @Test
+    public void builder_ignoresRepeatedWords() {
+        CompressedTrie built = CompressedTrie.builder().addAll(Stream.of("", "", "a", "a", "ab")).build();
+        assertEquals(Arrays.asList("", "a", "ab"), new ArrayList<>(built));
+        assertEquals(3, built.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsUnsortedWords() {
+        CompressedTrie.builder().add("boxes").add("box");
+    }
+
+    @Test
+    public void builder_readsLines() throws IOException {
+        Path file = Files.createTempFile("words", ".txt");
+        try {
+            Files.write(file, Arrays.asList("box", "boxes", "test"), StandardCharsets.UTF_8);
+            assertEquals(Arrays.asList("box", "boxes", "test"),
+              new ArrayList<>(CompressedTrie.builder().addLines(file).build()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void builder_buildsEmptyTrie() {
+        assertTrue(CompressedTrie.builder().build().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void builder_buildsUnmodifiableView() {
+        NavigableSet<String> built = CompressedTrie.builder().add("box").buildUnmodifiable();
+        assertTrue(built.contains("box"));
+        built.add("boxes");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void builder_buildsOnlyOnce() {
+        CompressedTrie.Builder builder = CompressedTrie.builder().add("box");
+        builder.build();
+        builder.add("boxes");
+    }
+
+    @Test
+    public void parallelBuild_buildsSameTreeAsAdding() throws IOException {
+        Random random = new Random(612);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            words.add(Integer.toString(random.nextInt(1 << 24), 7));
+        }
+        cut.addAll(words);
+        cut.add("");
+        words.add("");
+
+        CompressedTrie built = CompressedTrie.parallelBuild(words);
+        assertEquals(cut.size(), built.size());
+        assertArrayEquals(snapshot(cut), snapshot(built));
+    }
+
+    @Test
+    public void parallelBuild_keepsCommonPrefixBelowRoot() {
+        CompressedTrie built = CompressedTrie.parallelBuild(Arrays.asList("https://b", "https://a"));
+        assertEquals(Arrays.asList("https://a", "https://b"), new ArrayList<>(built));
+        assertEquals(2, built.countPrefix("https://"));
+        assertTrue(CompressedTrie.parallelBuild(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void toCompressedTrie_collectsParallelStream() {
+        List<String> words = Arrays.asList("test", "box", "boxes", "tester", "box");
+        CompressedTrie collected = words.parallelStream().collect(CompressedTrie.toCompressedTrie());
+        assertEquals(new TreeSet<>(words), collected);
+    }
+
+    @Test
+    public void containsBatch_answersInInputOrder() {
+        cut.addAll(Arrays.asList("", "box", "boxer", "boxes", "test", "tester"));
+        List<String> words = Arrays.asList("tester", "bo", "box", "boxes", "", "boxing", "box", "tes", "test");
+        boolean[] expected = { true, false, true, true, true, false, true, false, true };
+
+        assertArrayEquals(expected, cut.containsBatch(words));
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted);
+        boolean[] sortedResult = cut.containsBatch(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), cut.contains(sorted.get(i)), sortedResult[i]);
+        }
+        assertEquals(0, cut.containsBatch(Collections.emptyList()).length);
+    }
+
+    @Test
+    public void containsBatch_matchesSingleLookups() {
+        Random random = new Random(612);
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String word = "https://example.com/" + Integer.toString(random.nextInt(1 << 12), 3);
+            if (random.nextBoolean()) {
+                cut.add(word);
+            }
+            batch.add(word.substring(0, word.length() - random.nextInt(3)));
+        }
+        boolean[] result = cut.containsBatch(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(batch.get(i), cut.contains(batch.get(i)), result[i]);
+        }
+    }
+
+    @Test
+    public void containsBatch_rejectsNullWords() {
+        for (List<String> batch : Arrays.asList(Arrays.asList("b", null, "a"), Arrays.asList(null, "a"))) {
+            try {
+                cut.containsBatch(batch);
+                fail("Accepted " + batch);
+            } catch (NullPointerException expected) {
+                assertEquals("Cannot look for a null word", expected.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void longestPrefixOf_findsRoute() {
+        cut.addAll(Arrays.asList("/", "/api", "/api/users", "/apiary", "/static/"));
+
+        assertEquals("/api/users", cut.longestPrefixOf("/api/users/42/orders"));
+        assertEquals("/api", cut.longestPrefixOf("/api/user"));
+        assertEquals("/apiary", cut.longestPrefixOf(new StringBuilder("/apiary")));
+        assertEquals("/", cut.longestPrefixOf("/static"));
+        assertNull(cut.longestPrefixOf("api"));
+        assertEquals(-1, cut.longestPrefixLength(""));
+        assertEquals(8, cut.longestPrefixLength("/static/app.js"));
+
+        cut.add("");
+        assertEquals("", cut.longestPrefixOf("api"));
+    }
+
+    @Test
+    public void prefixesOf_listsAllRoutesShortestFirst() {
+        cut.addAll(Arrays.asList("", "/", "/api", "/api/users", "/apiary"));
+
+        assertEquals(Arrays.asList("", "/", "/api", "/api/users"), cut.prefixesOf("/api/users/42"));
+        assertEquals(Arrays.asList("", "/"), cut.prefixesOf("/ap"));
+        assertEquals(Collections.singletonList(""), cut.prefixesOf("x"));
+    }
+
+    @Test
+    public void fuzzyMatches_correctsMisspelling() {
+        cut.addAll(Arrays.asList("box", "boxer", "boxes", "boxing", "test", "tester"));
+
+        assertEquals(Arrays.asList("boxer", "boxes"), cut.fuzzyMatches("boxez", 1));
+        assertEquals(Arrays.asList("test", "tester"), cut.fuzzyPrefixMatches("tets", 1));
+        assertTrue(cut.fuzzyMatches("zzzzzz", 2).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fuzzyMatches_rejectsNegativeDistance() {
+        cut.fuzzyMatches("box", -1);
+    }
+
+    @Test
+    public void matches_pattern() {
+        cut.addAll(Arrays.asList("user_1_2025", "user_1_2026", "user_22_2026", "admin_1_2026"));
+
+        assertEquals(Arrays.asList("user_1_2026", "user_22_2026"), cut.matches(TriePattern.glob("user_*_2026")));
+        assertEquals(Collections.singletonList("admin_1_2026"), cut.matches(TriePattern.regex("a[a-z]+_\\d_2026")));
+    }
+
+    @Test
+    public void topK_returnsHighestScoresFirst() {
+        cut.add("box", 10);
+        cut.add("boxer", 50);
+        cut.add("boxes", 30);
+        cut.add("boxing", 40);
+        cut.add("fox", 100);
+        cut.add("boxed");
+
+        assertEquals(Arrays.asList("boxer", "boxing", "boxes"), cut.topK("box", 3));
+        assertEquals(Arrays.asList("fox", "boxer"), cut.topK("", 2));
+        assertEquals(Arrays.asList("boxer", "boxes", "boxed"), cut.topK("boxe", 5));
+        assertTrue(cut.topK("cat", 3).isEmpty());
+        assertTrue(cut.topK("box", 0).isEmpty());
+    }
+
+    @Test
+    public void topK_followsScoreChanges() {
+        cut.add("box", 10);
+        cut.add("boxer", 50);
+        cut.add("boxes", 30);
+
+        assertFalse(cut.add("boxer", 5));
+        assertEquals(5, cut.score("boxer"));
+        assertEquals(Arrays.asList("boxes", "box"), cut.topK("box", 2));
+
+        cut.remove("boxes");
+        assertEquals(Arrays.asList("box", "boxer"), cut.topK("bo", 2));
+        assertEquals(-1, cut.score("boxes"));
+        assertEquals(-1, cut.score("bo"));
+    }
+
+    @Test
+    public void topK_matchesSortedScores() {
+        Random random = new Random(612);
+        Map<String, Long> scores = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String word = Integer.toString(random.nextInt(1 << 16), 7);
+            long score = random.nextInt(1 << 20);
+            cut.add(word, score);
+            scores.put(word, score);
+        }
+        for (int i = 0; i < 1000; i++) {
+            String word = Integer.toString(random.nextInt(1 << 16), 7);
+            if (random.nextBoolean()) {
+                cut.remove(word);
+                scores.remove(word);
+            } else if (scores.containsKey(word)) {
+                long score = random.nextInt(1 << 20);
+                cut.add(word, score);
+                scores.put(word, score);
+            }
+        }
+        for (String prefix : Arrays.asList("", "1", "25", "606")) {
+            List<Long> expected = scores.entrySet().stream()
+              .filter(entry -> entry.getKey().startsWith(prefix))
+              .map(Map.Entry::getValue)
+              .sorted(Comparator.reverseOrder())
+              .limit(20)
+              .collect(Collectors.toList());
+            List<Long> actual = cut.topK(prefix, 20).stream().map(cut::score).collect(Collectors.toList());
+            assertEquals(prefix, expected, actual);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_rejectsNegativeScore() {
+        cut.add("box", -1);
+    }
+
+    @Test
+    public void scanner_findsWordsInText() {
+        cut.addAll(Arrays.asList("bad", "badly", "worse"));
+        TrieScanner scanner = cut.scanner();
+        cut.add("text");
+        List<String> found = new ArrayList<>();
+
+        scanner.scan("a badly worse text", (start, end, word) -> found.add(word + "@" + start));
+
+        assertEquals(Arrays.asList("bad@2", "badly@2", "worse@8"), found);
+    }
 }
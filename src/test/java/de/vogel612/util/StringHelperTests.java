@@ -1,5 +1,6 @@
 package de.vogel612.util;
 
+import static de.vogel612.util.StringHelper.commonPrefixLength;
 import static de.vogel612.util.StringHelper.longestCommonPrefix;
 import static org.junit.Assert.assertEquals;
 
@@ -26,4 +27,12 @@ public class StringHelperTests {
             assertEquals(testCase[0], longestCommonPrefix(testCase[1], testCase[2]));
         }
     }
+
+    @Test
+    public void commonPrefixLength_respectsOffsets() {
+        assertEquals(3, commonPrefixLength("boxes", 0, "xxboxing", 2));
+        assertEquals(2, commonPrefixLength("boxes", 3, "es", 0));
+        assertEquals(0, commonPrefixLength("box", 3, "box", 0));
+        assertEquals(0, commonPrefixLength("box", 0, "fox", 0));
+    }
 }